@@ -0,0 +1,93 @@
+package lowestCommonAncestor;
+
+import java.util.Arrays;
+
+/**
+ * Scratch space for LCA searches over the reverse edges of a DAG in compressed sparse row form: the
+ * ancestors of node i are sources[offsets[i]] .. sources[offsets[i+1] - 1].
+ * The marks are generation stamps, so a new search starts in O(1) instead of clearing a mark per node,
+ * and the buffers are allocated once and reused by every search. Not thread-safe: each thread needs its own.
+ */
+final class AncestorSearch {
+	private final int[] offsets;
+	private final int[] sources;
+	private final int[] depth;
+	private final int[] marked;			// == stamp for the ancestors of the second node
+	private final int[] visited;		// == stamp for the nodes reached from the first node
+	private final int[] queue;
+	private int stamp;
+
+	AncestorSearch(final int[] offsets, final int[] sources, final int[] depth)
+	{
+		this.offsets = offsets;
+		this.sources = sources;
+		this.depth = depth;
+		final int n = offsets.length - 1;
+		this.marked = new int[n];
+		this.visited = new int[n];
+		this.queue = new int[n];
+	}
+
+	/**
+	 * Same search as DirectedAcyclicGraph.LCA: the ancestors of node2 are marked, then a breadth first
+	 * search up from node1 keeps the marked node with the greatest depth and does not go past it.
+	 * Ties are broken in favour of the ancestor closest to node1.
+	 *
+	 * @param node1 id of the first node
+	 * @param node2 id of the second node
+	 * @return id of the lowest common ancestor, or -1 if the nodes share no ancestor
+	 */
+	int lca(final int node1, final int node2)
+	{
+		if(++stamp == Integer.MAX_VALUE)
+		{
+			Arrays.fill(marked, 0);
+			Arrays.fill(visited, 0);
+			stamp = 1;
+		}
+
+		int head = 0;
+		int tail = 0;
+		marked[node2] = stamp;
+		queue[tail++] = node2;
+		while(head < tail)
+		{
+			final int node = queue[head++];
+			for(int e = offsets[node]; e < offsets[node + 1]; e++)
+			{
+				final int ancestor = sources[e];
+				if(marked[ancestor] != stamp)
+				{
+					marked[ancestor] = stamp;
+					queue[tail++] = ancestor;
+				}
+			}
+		}
+
+		head = 0;
+		tail = 0;
+		int deepest = -1;
+		visited[node1] = stamp;
+		queue[tail++] = node1;
+		while(head < tail)
+		{
+			final int node = queue[head++];
+			if(marked[node] == stamp)
+			{
+				if(deepest == -1 || depth[node] > depth[deepest])
+					deepest = node;
+				continue;
+			}
+			for(int e = offsets[node]; e < offsets[node + 1]; e++)
+			{
+				final int ancestor = sources[e];
+				if(visited[ancestor] != stamp)
+				{
+					visited[ancestor] = stamp;
+					queue[tail++] = ancestor;
+				}
+			}
+		}
+		return deepest;
+	}
+}
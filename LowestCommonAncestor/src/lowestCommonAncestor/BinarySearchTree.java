@@ -9,11 +9,32 @@
  *************************************************************************/
 package lowestCommonAncestor;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class BinarySearchTree<Key extends Comparable<Key>, Value> {
-	private Node root;             // root of BST
+	private static final int DELTA = 3;	// in a balanced tree no subtree outweighs its sibling more than DELTA times
+	private static final int GAMMA = 2;	// decides between a single and a double rotation when rebalancing
+
+	private volatile Node root;    // root of BST
+	private final boolean balanced;	// rebalance on every put and delete?
+	private final boolean copyOnWrite;	// never change a node once it is reachable from root?
 
 	/**
 	 * Private node class.
@@ -23,12 +44,97 @@ public class BinarySearchTree<Key extends Comparable<Key>, Value> {
 		private Value val;         // associated data
 		private Node left, right;  // left and right subtrees
 		private int N;             // number of nodes in subtree
+		private int height;        // number of links from this node to the deepest leaf below it
 
 		public Node(Key key, Value val, int N) {
 			this.key = key;
 			this.val = val;
 			this.N = N;
 		}
+
+		public Node(Node node) {
+			this.key = node.key;
+			this.val = node.val;
+			this.left = node.left;
+			this.right = node.right;
+			this.N = node.N;
+			this.height = node.height;
+		}
+	}
+
+	/**
+	 * Creates an empty tree that never rebalances, so its shape depends on the insertion order.
+	 */
+	public BinarySearchTree()
+	{
+		this(false);
+	}
+
+	/**
+	 * Creates an empty tree.
+	 * A balanced tree is kept weight-balanced (Nievergelt and Reingold, with the parameters of Hirai and Yamamoto):
+	 * after every put and delete, rotations make sure no subtree holds more than DELTA times as many keys
+	 * as its sibling. Only the subtree sizes N are needed for this, and the height stays O(log n) for any insertion order.
+	 *
+	 * @param balanced true to rebalance on every put and delete
+	 */
+	public BinarySearchTree(boolean balanced)
+	{
+		this(balanced, false);
+	}
+
+	/**
+	 * Creates an empty tree that may copy on write.
+	 * A copy-on-write tree never changes a node that is reachable from its root: put and delete copy the
+	 * nodes on the path they change (O(h) of them) and then publish the new root in a single write.
+	 * A reader that has read root therefore always sees one consistent version of the tree, and since 
+	 * every read method reads root only once, reads need no locking while another thread writes.
+	 *
+	 * @param balanced true to rebalance on every put and delete
+	 * @param copyOnWrite true to path-copy on every put and delete
+	 */
+	protected BinarySearchTree(boolean balanced, boolean copyOnWrite)
+	{
+		this.balanced = balanced;
+		this.copyOnWrite = copyOnWrite;
+	}
+
+	/**
+	 * Creates an empty persistent tree. It copies on write like the tree above, so each put or delete
+	 * builds a new version of the tree from O(h) new nodes while every older version stays intact, and
+	 * snapshot() hands out the current version in Theta(1). Versions share their unchanged nodes; once no
+	 * snapshot refers to a version any more, the nodes only it used are garbage collected.
+	 *
+	 * @param balanced true to rebalance on every put and delete
+	 * @return an empty persistent tree
+	 */
+	public static <Key extends Comparable<Key>, Value> BinarySearchTree<Key, Value> persistent(boolean balanced)
+	{
+		return new BinarySearchTree<>(balanced, true);
+	}
+
+	/**
+	 * The current version of a persistent tree, in Theta(1).
+	 * The snapshot is itself a persistent tree that shares all of its nodes with this one, and neither
+	 * tree sees the puts and deletes made on the other afterwards. Long queries, like LCA, median or a
+	 * full in-order walk, can run on a snapshot while this tree keeps changing.
+	 *
+	 * @return a tree holding the keys and values this tree holds now
+	 * @throws UnsupportedOperationException if the tree changes its nodes in place, so it is not persistent
+	 */
+	public BinarySearchTree<Key, Value> snapshot()
+	{
+		if (!copyOnWrite)
+			throw new UnsupportedOperationException("Only a persistent tree can take snapshots");
+		final BinarySearchTree<Key, Value> snapshot = new BinarySearchTree<>(balanced, true);
+		snapshot.root = this.root;
+		return snapshot;
+	}
+
+	// a node that can be changed by the current put or delete
+	private Node writable(Node x)
+	{
+		return copyOnWrite ? new Node(x) : x;
 	}
 
 	// is the symbol table empty?
@@ -49,6 +155,12 @@ public class BinarySearchTree<Key extends Comparable<Key>, Value> {
 		else return x.N;
 	}
 
+	// recompute the size and height of x from its children
+	private void update(Node x) {
+		x.N = 1 + size(x.left) + size(x.right);
+		x.height = 1 + Math.max(height(x.left), height(x.right));
+	}
+
 	/**
 	 *  Search BST for given key.
 	 *  Does there exist a key-value pair with given key?
@@ -74,15 +186,18 @@ public class BinarySearchTree<Key extends Comparable<Key>, Value> {
 
 	private Node getNode(Node root, Key key) 
 	{
-		if (root == null) 
-			return null;
-		int cmp = key.compareTo(root.key);
-		if(cmp < 0) 
-			return getNode(root.left, key);
-		else if (cmp > 0) 
-			return getNode(root.right, key);
-		else              
-			return root;
+		Node node = root;
+		while (node != null)
+		{
+			int cmp = key.compareTo(node.key);
+			if(cmp < 0) 
+				node = node.left;
+			else if (cmp > 0) 
+				node = node.right;
+			else              
+				return node;
+		}
+		return null;
 	}
 	
 	private Value get(Node root, Key key) 
@@ -105,23 +220,247 @@ public class BinarySearchTree<Key extends Comparable<Key>, Value> {
 			delete(key); 
 			return; 
 		}
-		root = put(root, key, val);
+		if (!balanced && !copyOnWrite) {
+			putUnbalanced(key, val);
+			return;
+		}
+		//walk down to the key, remembering the path so the sizes above can be updated
+		final Deque<Node> path = new ArrayDeque<>();
+		Node x = root;
+		while (x != null) {
+			int cmp = key.compareTo(x.key);
+			if (cmp == 0) {
+				if (copyOnWrite) {
+					x = writable(x);
+					x.val = val;
+					root = relink(path, key, x);
+				}
+				else x.val = val;
+				return;
+			}
+			path.push(x);
+			x = cmp < 0 ? x.left : x.right;
+		}
+		root = relink(path, key, new Node(key, val, 1));
 	}
 
-	private Node put(Node x, Key key, Value val) {
-		if (x == null) return new Node(key, val, 1);
-		int cmp = key.compareTo(x.key);
-		if      (cmp < 0) x.left  = put(x.left,  key, val);
-		else if (cmp > 0) x.right = put(x.right, key, val);
-		else              x.val   = val;
-		x.N = 1 + size(x.left) + size(x.right);
+	// without rebalancing a new key always ends up as a leaf, so a single descent finds its place; on the
+	// way back up every size grows by one, while the heights only change until one of them stays the same
+	private void putUnbalanced(Key key, Value val) {
+		final Deque<Node> path = new ArrayDeque<>();
+		Node x = root;
+		int cmp = 0;
+		while (x != null) {
+			cmp = key.compareTo(x.key);
+			if (cmp == 0) {
+				x.val = val;
+				return;
+			}
+			path.push(x);
+			x = cmp < 0 ? x.left : x.right;
+		}
+		Node child = new Node(key, val, 1);
+		if (path.isEmpty()) {
+			root = child;
+			return;
+		}
+		if (cmp < 0) path.peek().left = child;
+		else         path.peek().right = child;
+		boolean growing = true;
+		for (Node parent : path) {
+			parent.N++;
+			if (growing) {
+				growing = parent.height < child.height + 1;
+				if (growing) parent.height = child.height + 1;
+			}
+			child = parent;
+		}
+	}
+
+	/**
+	 * Hangs subtree below the last node of path, on the side where key belongs, then walks back
+	 * up the path to the root updating the subtree sizes and rebalancing.
+	 *
+	 * @param path the nodes from the root down to subtree's new parent, with the parent on top
+	 * @param key a key that belongs in subtree's position
+	 * @param subtree the new subtree, may be null
+	 * @return the new root of the whole path
+	 */
+	private Node relink(Deque<Node> path, Key key, Node subtree)
+	{
+		while (!path.isEmpty())
+		{
+			Node parent = writable(path.pop());
+			if (key.compareTo(parent.key) < 0) parent.left = subtree;
+			else                               parent.right = subtree;
+			update(parent);
+			subtree = balance(parent);
+		}
+		return subtree;
+	}
+
+	/**
+	 * Builds a tree from key-value pairs in a single O(n) pass.
+	 * The pairs should come in strictly increasing key order; other input is sorted first (see putAll).
+	 *
+	 * @param entries the key-value pairs
+	 * @param balanced true if the tree should rebalance on later puts and deletes
+	 * @return a perfectly balanced tree holding the pairs
+	 */
+	public static <Key extends Comparable<Key>, Value> BinarySearchTree<Key, Value> fromSorted(Iterator<Pair<Key, Value>> entries, boolean balanced)
+	{
+		final BinarySearchTree<Key, Value> tree = new BinarySearchTree<>(balanced);
+		tree.putAll(entries);
+		return tree;
+	}
+
+	/**
+	 * Inserts many key-value pairs at once and rebuilds the tree perfectly balanced.
+	 * Pairs in strictly increasing key order are merged with the keys already in the tree in O(n + m);
+	 * anything else is sorted first, in O(m log m). As with put, a later pair overrides an earlier one with
+	 * the same key, and a null value deletes the key.
+	 *
+	 * @param entries the key-value pairs to insert
+	 */
+	public void putAll(Iterator<Pair<Key, Value>> entries)
+	{
+		List<Pair<Key, Value>> pairs = new ArrayList<>();
+		boolean sorted = true;
+		while (entries.hasNext())
+		{
+			final Pair<Key, Value> pair = entries.next();
+			if (!pairs.isEmpty() && pair.first().compareTo(pairs.get(pairs.size() - 1).first()) <= 0)
+				sorted = false;
+			pairs.add(pair);
+		}
+		if (!sorted)
+		{
+			//stable sort, then keep the last of each run of equal keys
+			pairs.sort(Comparator.comparing(Pair::first));
+			final List<Pair<Key, Value>> unique = new ArrayList<>(pairs.size());
+			for (int i = 0; i < pairs.size(); i++)
+			{
+				if (i + 1 == pairs.size() || pairs.get(i).first().compareTo(pairs.get(i + 1).first()) != 0)
+					unique.add(pairs.get(i));
+			}
+			pairs = unique;
+		}
+
+		//merge with the keys already in the tree, in order
+		final List<Key> keys = new ArrayList<>(size() + pairs.size());
+		final List<Value> values = new ArrayList<>(size() + pairs.size());
+		final Deque<Node> stack = new ArrayDeque<>();
+		Node node = root;
+		int i = 0;
+		while (node != null || !stack.isEmpty())
+		{
+			while (node != null)
+			{
+				stack.push(node);
+				node = node.left;
+			}
+			node = stack.pop();
+			while (i < pairs.size() && pairs.get(i).first().compareTo(node.key) < 0)
+				add(keys, values, pairs.get(i++));
+			if (i < pairs.size() && pairs.get(i).first().compareTo(node.key) == 0)
+				add(keys, values, pairs.get(i++));
+			else
+			{
+				keys.add(node.key);
+				values.add(node.val);
+			}
+			node = node.right;
+		}
+		while (i < pairs.size())
+			add(keys, values, pairs.get(i++));
+		root = build(keys, values, 0, keys.size() - 1);
+	}
+
+	// appends a pair to the merged keys and values, unless it deletes its key
+	private void add(List<Key> keys, List<Value> values, Pair<Key, Value> pair)
+	{
+		if (pair.second() != null)
+		{
+			keys.add(pair.first());
+			values.add(pair.second());
+		}
+	}
+
+	// perfectly balanced tree from sorted keys, so the recursion is only log n deep
+	private Node build(List<Key> keys, List<Value> values, int lo, int hi)
+	{
+		if (lo > hi) return null;
+		int mid = (lo + hi) >>> 1;
+		Node x = new Node(keys.get(mid), values.get(mid), 1);
+		x.left = build(keys, values, lo, mid - 1);
+		x.right = build(keys, values, mid + 1, hi);
+		update(x);
+		return x;
+	}
+
+	// is the subtree a light enough compared to its sibling b?
+	private boolean isBalanced(Node a, Node b)
+	{
+		return DELTA * (size(a) + 1) >= size(b) + 1;
+	}
+
+	// can the heavy subtree be fixed by a single rotation, given its inner child a and outer child b?
+	private boolean isSingle(Node a, Node b)
+	{
+		return size(a) + 1 < GAMMA * (size(b) + 1);
+	}
+
+	/**
+	 * Restores the weight balance of a node whose subtrees were balanced before a single put or delete below it.
+	 * Does nothing unless the tree is balanced.
+	 */
+	private Node balance(Node x)
+	{
+		if(!balanced)
+			return x;
+		if(!isBalanced(x.left, x.right))
+		{
+			//right side too heavy
+			if(!isSingle(x.right.left, x.right.right))
+				x.right = rotateRight(x.right);
+			x = rotateLeft(x);
+		}
+		else if(!isBalanced(x.right, x.left))
+		{
+			//left side too heavy
+			if(!isSingle(x.left.right, x.left.left))
+				x.left = rotateLeft(x.left);
+			x = rotateRight(x);
+		}
+		return x;
+	}
+
+	private Node rotateLeft(Node h)
+	{
+		h = writable(h);
+		Node x = writable(h.right);
+		h.right = x.left;
+		x.left = h;
+		update(h);
+		update(x);
+		return x;
+	}
+
+	private Node rotateRight(Node h)
+	{
+		h = writable(h);
+		Node x = writable(h.left);
+		h.left = x.right;
+		x.right = h;
+		update(h);
+		update(x);
 		return x;
 	}
 
 	/**
 	 * Tree height.
 	 *
-	 * Asymptotic worst-case running time using Theta notation: 
+	 * Asymptotic worst-case running time using Theta notation: Theta(1), every node stores its height.
 	 *
 	 * @return the number of links from the root to the deepest leaf.
 	 *
@@ -139,27 +478,10 @@ public class BinarySearchTree<Key extends Comparable<Key>, Value> {
 	}
 
 	private int height(Node node) {
-		int height = -1;
-		int leftHeight = -1;
-		int rightHeight = -1;
-
-		if (node != null) {
-			if(node.left != null) {
-				leftHeight = height(node.left);
-			}
-			if(node.right != null) {
-				rightHeight = height(node.right);
-			}
-			height = (Math.max(leftHeight, rightHeight)) + 1;
-		}
-		return height;
+		if (node == null) return -1;
+		else return node.height;
 	}
 
-	private int compareHeights(Key key1, Key key2)
-	{
-		return Integer.compare(height(getNode(this.root, key1)), height(getNode(this.root, key2)));
-	}
-	
 	/**
 	 * Median key.
 	 * If the tree has N keys k1 < k2 < k3 < ... < kN, then their median key 
@@ -170,40 +492,310 @@ public class BinarySearchTree<Key extends Comparable<Key>, Value> {
 	 * The running time should be Theta(h), where h is the height of the tree.
 	 */
 	public Key median() {
-		return median(this.root, (this.size() + 1)/2);
+		final Node root = this.root;
+		return select(root, (size(root) + 1)/2);
 	}
 
-	private Key median(Node node, int positionWanted)
+	// the key at (1-based) position positionWanted in the subtree rooted at node, or null if there is none
+	private Key select(Node node, int positionWanted)
 	{
-		Key returnKey = null;
-		if (!isEmpty() && node != null) 
+		while (node != null) 
 		{
-			int leftCount = 0;
-			if(node.left != null)
-			{
-				leftCount = node.left.N;
-			}
+			int leftCount = size(node.left);
 			if(leftCount + 1 == positionWanted)
 			{
-				//the median is the root
-				returnKey = node.key;
+				//the wanted key is the root
+				return node.key;
 			}
 			else if(leftCount >= positionWanted)
 			{
-				//the median has to be in the left subtree
-				returnKey = median(node.left, positionWanted);
+				//the wanted key has to be in the left subtree
+				node = node.left;
 			}
 			else
 			{
-				//the median has to be in the right subtree
-				if(node.right != null)
-				{
-					positionWanted -= leftCount + 1; //take out the count for the left subtree and the root
-					returnKey = median(node.right, positionWanted);
+				//the wanted key has to be in the right subtree
+				positionWanted -= leftCount + 1; //take out the count for the left subtree and the root
+				node = node.right;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Key of a given rank.
+	 * If the tree has N keys k0 < k1 < ... < k(N-1), select(i) is ki. Theta(h).
+	 *
+	 * @param k the rank, from 0 to N-1
+	 * @return the key with exactly k smaller keys in the tree, or null if k is out of range
+	 */
+	public Key select(int k) {
+		return select(this.root, k + 1);
+	}
+
+	/**
+	 * Number of keys in the tree that are smaller than key. Theta(h).
+	 *
+	 * @param key
+	 * @return the rank key has, or would have if it were inserted
+	 */
+	public int rank(Key key) {
+		return rank(this.root, key);
+	}
+
+	private int rank(Node node, Key key) {
+		int rank = 0;
+		while (node != null)
+		{
+			int cmp = key.compareTo(node.key);
+			if (cmp < 0)
+				node = node.left;
+			else if (cmp > 0)
+			{
+				rank += size(node.left) + 1;
+				node = node.right;
+			}
+			else
+				return rank + size(node.left);
+		}
+		return rank;
+	}
+
+	/**
+	 * Percentile by the nearest-rank method: the smallest key such that at least p percent of 
+	 * all keys are less than or equal to it. percentile(50) is the median. Theta(h).
+	 *
+	 * @param p the percentage, from 0 to 100
+	 * @return the key at that percentile, or null if the tree is empty or p is out of range
+	 */
+	public Key percentile(double p) {
+		if (!(p >= 0 && p <= 100))
+			return null;
+		final Node root = this.root;
+		//multiply before dividing, so an integer p gives an exact product and only the division rounds
+		int position = (int) Math.ceil(p * size(root) / 100.0);
+		return select(root, Math.max(position, 1));
+	}
+
+	/**
+	 * Number of keys between lo and hi, both included. Theta(h).
+	 *
+	 * @param lo
+	 * @param hi
+	 * @return how many keys k in the tree have lo <= k <= hi
+	 */
+	public int countInRange(Key lo, Key hi) {
+		if (lo.compareTo(hi) > 0)
+			return 0;
+		final Node root = this.root;
+		if (getNode(root, hi) != null)
+			return rank(root, hi) - rank(root, lo) + 1;
+		return rank(root, hi) - rank(root, lo);
+	}
+
+	/**
+	 * Largest key less than or equal to key. Theta(h).
+	 *
+	 * @param key
+	 * @return the floor of key, or null if every key in the tree is greater
+	 */
+	public Key floor(Key key) {
+		Key floor = null;
+		Node node = this.root;
+		while (node != null)
+		{
+			int cmp = key.compareTo(node.key);
+			if (cmp == 0)
+				return node.key;
+			if (cmp < 0)
+				node = node.left;
+			else
+			{
+				floor = node.key;
+				node = node.right;
+			}
+		}
+		return floor;
+	}
+
+	/**
+	 * Smallest key greater than or equal to key. Theta(h).
+	 *
+	 * @param key
+	 * @return the ceiling of key, or null if every key in the tree is smaller
+	 */
+	public Key ceiling(Key key) {
+		Key ceiling = null;
+		Node node = this.root;
+		while (node != null)
+		{
+			int cmp = key.compareTo(node.key);
+			if (cmp == 0)
+				return node.key;
+			if (cmp > 0)
+				node = node.right;
+			else
+			{
+				ceiling = node.key;
+				node = node.left;
+			}
+		}
+		return ceiling;
+	}
+
+	/**
+	 * All keys in increasing order.
+	 * Each iterator walks the tree lazily, holding only O(h) nodes at a time. On a persistent or
+	 * concurrent tree it walks the version that was current when it was created; on any other tree
+	 * a put or delete while it is in use leaves the rest of the walk undefined.
+	 *
+	 * @return the keys, in order
+	 */
+	public Iterable<Key> keys() {
+		return keys(null, null);
+	}
+
+	/**
+	 * Keys between lo and hi, both included, in increasing order. Iterates lazily like keys(),
+	 * and skips the keys below lo in Theta(h).
+	 *
+	 * @param lo
+	 * @param hi
+	 * @return the keys k in the tree with lo <= k <= hi, in order
+	 */
+	public Iterable<Key> range(Key lo, Key hi) {
+		return keys(lo, hi);
+	}
+
+	private Iterable<Key> keys(Key lo, Key hi) {
+		return () -> new Iterator<Key>() {
+			private final InOrder walk = new InOrder(root, lo, hi);
+
+			@Override
+			public boolean hasNext() {
+				return walk.hasNext();
+			}
+
+			@Override
+			public Key next() {
+				return walk.next().key;
+			}
+		};
+	}
+
+	/**
+	 * All key-value pairs in increasing key order, as a lazy stream over the tree (see keys()).
+	 * The stream's spliterator splits on subtree boundaries, using the subtree sizes to cut the
+	 * remaining pairs roughly in half, so entries().parallel() spreads the work across cores.
+	 *
+	 * @return the key-value pairs, in key order
+	 */
+	public Stream<Map.Entry<Key, Value>> entries() {
+		return StreamSupport.stream(new InOrder(this.root, null, null), false);
+	}
+
+	/**
+	 * In-order walk with an explicit stack.
+	 * Each stack entry is a node still to be visited together with the subtree to walk right after it,
+	 * which is the node's right subtree unless a split has cut that subtree in two.
+	 */
+	private final class InOrder implements Spliterator<Map.Entry<Key, Value>> {
+		private final List<Node> nodes = new ArrayList<>();	// nodes still to visit, the next one last
+		private final List<Node> rests = new ArrayList<>();	// subtree to walk after each of them
+		private final Key hi;		// last key to visit, null for no limit
+		private long remaining;		// number of keys left to visit, if there is no hi
+
+		// walk of the keys of root from lo to hi, where a null bound means no limit
+		private InOrder(Node root, Key lo, Key hi) {
+			this.hi = hi;
+			Node x = root;
+			while (x != null) {
+				if (lo != null && lo.compareTo(x.key) > 0)
+					x = x.right;
+				else {
+					push(x, x.right);
+					x = x.left;
 				}
 			}
 		}
-		return returnKey;
+
+		private InOrder() {
+			this.hi = null;
+		}
+
+		private void push(Node node, Node rest) {
+			nodes.add(node);
+			rests.add(rest);
+			remaining += 1 + size(rest);
+		}
+
+		private boolean hasNext() {
+			final int top = nodes.size() - 1;
+			return top >= 0 && (hi == null || hi.compareTo(nodes.get(top).key) >= 0);
+		}
+
+		private Node next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			final int top = nodes.size() - 1;
+			final Node node = nodes.remove(top);
+			Node x = rests.remove(top);
+			remaining -= 1 + size(x);
+			while (x != null) {
+				push(x, x.right);
+				x = x.left;
+			}
+			return node;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super Map.Entry<Key, Value>> action) {
+			if (!hasNext())
+				return false;
+			final Node node = next();
+			action.accept(new AbstractMap.SimpleImmutableEntry<>(node.key, node.val));
+			return true;
+		}
+
+		@Override
+		public Spliterator<Map.Entry<Key, Value>> trySplit() {
+			if (nodes.isEmpty())
+				return null;
+			final InOrder prefix = new InOrder();
+			if (nodes.size() == 1) {
+				//the prefix gets the node and the left subtree of the subtree after it, this walk keeps the rest
+				final Node rest = rests.get(0);
+				if (rest == null)
+					return null;
+				prefix.push(nodes.get(0), rest.left);
+				nodes.set(0, rest);
+				rests.set(0, rest.right);
+			}
+			else {
+				//the bottom entry comes last and holds the largest right subtree, so the prefix gets all the others
+				for (int i = 1; i < nodes.size(); i++)
+					prefix.push(nodes.get(i), rests.get(i));
+				nodes.subList(1, nodes.size()).clear();
+				rests.subList(1, rests.size()).clear();
+			}
+			remaining -= prefix.remaining;
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			return remaining;
+		}
+
+		@Override
+		public int characteristics() {
+			return ORDERED | SORTED | DISTINCT | NONNULL | SIZED | SUBSIZED;
+		}
+
+		@Override
+		public Comparator<? super Map.Entry<Key, Value>> getComparator() {
+			return Map.Entry.comparingByKey();
+		}
 	}
 
 
@@ -229,31 +821,71 @@ public class BinarySearchTree<Key extends Comparable<Key>, Value> {
 	 * @return a String with all keys in the tree, in order, parenthesized.
 	 */
 	public String printKeysInOrder() {
-		String keysInOrder = printKeysInOrder(this.root);
+		final StringBuilder keysInOrder = new StringBuilder();
+		try {
+			printKeysInOrder(this.root, keysInOrder);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); //a StringBuilder never throws
+		}
 		System.out.println(keysInOrder);
-		return keysInOrder;
+		return keysInOrder.toString();
+	}
+
+	/**
+	 * Writes the same in-order sequence as printKeysInOrder() straight to out, in a single pass 
+	 * and without building it as a String first. Nothing is printed to System.out.
+	 *
+	 * @param out where to write the keys, e.g. a Writer or a StringBuilder
+	 * @throws IOException if out throws it
+	 */
+	public void printKeysInOrder(Appendable out) throws IOException {
+		printKeysInOrder(this.root, out);
 	}
 	
-	private String printKeysInOrder(Node node)
+	private void printKeysInOrder(Node node, Appendable out) throws IOException
 	{
-		String keysInOrder = "";
-		keysInOrder += "(";
-		if(!isEmpty() || node != null)
+		if(node == null)
 		{
-			if(node.left != null)
+			out.append("()");
+			return;
+		}
+		//explicit stack of nodes, each with how far it has got: 0 = not started, 1 = left subtree done, 2 = right subtree done
+		final Deque<Node> stack = new ArrayDeque<>();
+		final Deque<Integer> stage = new ArrayDeque<>();
+		stack.push(node);
+		stage.push(0);
+		while(!stack.isEmpty())
+		{
+			final Node current = stack.peek();
+			final int currentStage = stage.pop();
+			if(currentStage == 0)
 			{
-				keysInOrder += printKeysInOrder(node.left);
+				out.append('(');
+				stage.push(1);
+				if(current.left != null)
+				{
+					stack.push(current.left);
+					stage.push(0);
+				}
+				else out.append("()");
 			}
-			else keysInOrder += "()";
-			keysInOrder += node.val.toString();
-			if(node.right != null)
+			else if(currentStage == 1)
 			{
-				keysInOrder += printKeysInOrder(node.right);
+				out.append(String.valueOf(current.val));
+				stage.push(2);
+				if(current.right != null)
+				{
+					stack.push(current.right);
+					stage.push(0);
+				}
+				else out.append("()");
+			}
+			else
+			{
+				out.append(')');
+				stack.pop();
 			}
-			else keysInOrder += "()";
 		}
-		keysInOrder += ")";
-		return keysInOrder;
 	}
 
 	/**
@@ -262,27 +894,74 @@ public class BinarySearchTree<Key extends Comparable<Key>, Value> {
 	 * @return a multi-line string with the pretty ascii picture of the tree.
 	 */
 	public String prettyPrintKeys() {
-		String prettyPrint = prettyPrint(this.root, "");
+		final StringBuilder prettyPrint = new StringBuilder();
+		try {
+			prettyPrint(this.root, "", prettyPrint);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); //a StringBuilder never throws
+		}
 		System.out.println(prettyPrint);
-		return prettyPrint;
+		return prettyPrint.toString();
+	}
+
+	/**
+	 * Writes the same picture as prettyPrintKeys() straight to out, one line at a time and 
+	 * without building it as a String first. Nothing is printed to System.out.
+	 *
+	 * @param out where to write the picture, e.g. a Writer or a StringBuilder
+	 * @throws IOException if out throws it
+	 */
+	public void prettyPrintKeys(Appendable out) throws IOException {
+		prettyPrint(this.root, "", out);
 	}
 
-	private String prettyPrint(Node node, String prefix)
+	private void prettyPrint(Node node, String prefix, Appendable out) throws IOException
 	{
-		String prettyPrint = prefix;
-		if(isEmpty())
+		if(node == null)
 		{
-			prettyPrint += "-null\n";
+			out.append(prefix).append("-null\n");
+			return;
 		}
-		else
+		//the prefix grows by " |" for each level, and the bar is dropped once the left subtree is done.
+		//stage of each node on the stack: 0 = not started, 1 = left subtree done, 2 = right subtree done
+		final StringBuilder currentPrefix = new StringBuilder(prefix);
+		final Deque<Node> stack = new ArrayDeque<>();
+		final Deque<Integer> stage = new ArrayDeque<>();
+		stack.push(node);
+		stage.push(0);
+		while(!stack.isEmpty())
 		{
-			prettyPrint += "-" + node.key + "\n";
-			prefix += " |";
-			prettyPrint += node.left == null? prefix + "-null\n" : prettyPrint(node.left, prefix);
-			prefix = prefix.substring(0, prefix.length() - 1) + " ";
-			prettyPrint += node.right == null? prefix + "-null\n" : prettyPrint(node.right, prefix);
+			final Node current = stack.peek();
+			final int currentStage = stage.pop();
+			if(currentStage == 0)
+			{
+				out.append(currentPrefix).append('-').append(String.valueOf(current.key)).append('\n');
+				currentPrefix.append(" |");
+				stage.push(1);
+				if(current.left != null)
+				{
+					stack.push(current.left);
+					stage.push(0);
+				}
+				else out.append(currentPrefix).append("-null\n");
+			}
+			else if(currentStage == 1)
+			{
+				currentPrefix.setCharAt(currentPrefix.length() - 1, ' ');
+				stage.push(2);
+				if(current.right != null)
+				{
+					stack.push(current.right);
+					stage.push(0);
+				}
+				else out.append(currentPrefix).append("-null\n");
+			}
+			else
+			{
+				currentPrefix.setLength(currentPrefix.length() - 2);
+				stack.pop();
+			}
 		}
-		return prettyPrint;
 	}
 
 	/**
@@ -294,42 +973,51 @@ public class BinarySearchTree<Key extends Comparable<Key>, Value> {
 	 * @param key the key to delete
 	 */
 	public void delete(Key key) {
-		delete(this.root, key);
+		final Deque<Node> path = new ArrayDeque<>();
+		Node node = this.root;
+		while (node != null) {
+			int cmp = key.compareTo(node.key);
+			if (cmp == 0) break;
+			path.push(node);
+			node = cmp < 0 ? node.left : node.right;
+		}
+		if (node == null) return;
+		this.root = relink(path, key, delete(node));
 	}
 
-	private Node delete(Node node, Key key)
+	/**
+	 * Removes the root of a subtree.
+	 * @return the new root of the subtree
+	 */
+	private Node delete(Node node)
 	{
-		if (node == null) return null;
-		int cmp = key.compareTo(node.key);
-		if (cmp < 0) node.left = delete(node.left, key);
-		else if (cmp > 0) node.right = delete(node.right, key);
-		else {
-			if (node.right == null) return node.left;
-			if (node.left == null) return node.right;
-			Node t = node;
-			node = max(t.left);
-			node.left = deleteMax(t.left);
-			node.right = t.right;
-		}
-		node.N = size(node.left) + size(node.right) + 1;
-		return node;
+		if (node.right == null) return node.left;
+		if (node.left == null) return node.right;
+		Node t = node;
+		node = writable(max(t.left));
+		node.left = deleteMax(t.left);
+		node.right = t.right;
+		update(node);
+		return balance(node);
 	}
 
 	private Node deleteMax(Node node)
 	{
-		if (node.right == null) return node.left;
-		node.right = deleteMax(node.right);
-		node.N = 1 + size(node.right) + size(node.left);
-		return node;
+		final Deque<Node> path = new ArrayDeque<>();
+		while (node.right != null) {
+			path.push(node);
+			node = node.right;
+		}
+		return relink(path, node.key, node.left);
 	}
 
 	private Node max(Node node)
 	{
-		if(node.right == null)
+		while(node.right != null)
 		{
-			return node;
+			node = node.right;
 		}
-		return max(node.right);
+		return node;
 	}
 
 	/**
@@ -339,58 +1027,198 @@ public class BinarySearchTree<Key extends Comparable<Key>, Value> {
 	 */
 	public List<Key> getPath(Key child)
 	{
-		List<Node> pathNodes = new ArrayList<>();
-		pathNodes = getPath(this.root, child, pathNodes);
-		if(pathNodes != null) {
-			final List<Key> pathKeys = new ArrayList<>();
-			for(int i = 0 ; i < pathNodes.size(); i++)
-			{
-				pathKeys.add(i, pathNodes.get(i).key);
-			}
-			return pathKeys;	
-		}
-		return null;
-	}
-
-	private List<Node> getPath(Node root, Key child, List<Node> path)
-	{
-		path.add(root);
-		if(root.key.equals(child))
-		{
-			return path;
-		}
-		if(root.left != null && getPath(root.left, child, path) != null)
-		{
-			return path;
-		}
-		if(root.right != null && getPath(root.right, child,path) != null)
+		final List<Key> pathKeys = new ArrayList<>();
+		Node node = this.root;
+		while(node != null)
 		{
-			return path;
+			pathKeys.add(node.key);
+			int cmp = child.compareTo(node.key);
+			if(cmp == 0)
+				return pathKeys;
+			node = cmp < 0 ? node.left : node.right;
 		}
-		path.remove(path.size()-1);
 		return null;
 	}
 	
 	/**
 	 * Finds and returns the lowest common ancestor of two nodes in a BST given their keys
 	 * The lowest common ancestor of two nodes is that node which is furthest from a root that both source nodes' paths from that root have in common.
+	 * The keys themselves are not part of their paths, so if one key is an ancestor of the other the answer is its parent.
+	 * 
+	 * Both keys follow the same path down from the root until the first node whose key lies between them,
+	 * so a single descent finds it and the keys only need to be looked up below that node: Theta(h) in total.
 	 * @param key1 (key of first descendant)
 	 * @param key2 (key of second descendant)
 	 * @return LCA (key of lowest common ancestor of both descendants)
 	 */
 	public Key LCA(final Key key1, final Key key2)
 	{
-		if(this.contains(key1) && this.contains(key2))
+		Node parent = null;
+		Node node = this.root;
+		while(node != null)
 		{
-			//Get the paths to each key but remove the key itself (last element)
-			List<Key> path1 = getPath(key1);
-			path1.remove(path1.size() - 1);
-			List<Key> path2 = getPath(key2);
-			path2.remove(path2.size() - 1);
-			//Find the intersection of both paths and pick the deepest one
-			return path1.stream().distinct().filter(path2::contains).min(this::compareHeights).orElse(null);
+			final int cmp1 = key1.compareTo(node.key);
+			final int cmp2 = key2.compareTo(node.key);
+			if(cmp1 < 0 && cmp2 < 0)
+			{
+				parent = node;
+				node = node.left;
+			}
+			else if(cmp1 > 0 && cmp2 > 0)
+			{
+				parent = node;
+				node = node.right;
+			}
+			else 
+				break; //the paths to key1 and key2 split here
 		}
-		return null;
+		if(node == null || getNode(node, key1) == null || getNode(node, key2) == null)
+			return null;
+		if(key1.compareTo(node.key) == 0 || key2.compareTo(node.key) == 0)
+			return parent == null ? null : parent.key;
+		return node.key;
+	}
+	
+	/**
+	 * Answers a batch of LCA queries with Tarjan's off-line algorithm: one traversal of the tree
+	 * and a union-find structure, O(n + q*alpha(n)) for n keys and q queries.
+	 * Each answer is the same as LCA(first, second) would give.
+	 * Query keys are looked up by hash, so Key's equals/hashCode must be consistent with compareTo.
+	 * 
+	 * @param queries pairs of keys
+	 * @return the lowest common ancestor of each pair, in query order (null where LCA gives null)
+	 */
+	public List<Key> LCA(final Collection<Pair<Key, Key>> queries)
+	{
+		final Node root = this.root;
+		final int n = size(root);
+		
+		//number the nodes in pre-order, remembering each node's parent
+		final List<Node> nodes = new ArrayList<>(n);
+		final int[] parent = new int[n];
+		final Map<Key, Integer> index = new HashMap<>(n * 2);
+		final Deque<Node> stack = new ArrayDeque<>();
+		final Deque<Integer> stackParent = new ArrayDeque<>();
+		if(root != null)
+		{
+			stack.push(root);
+			stackParent.push(-1);
+		}
+		while(!stack.isEmpty())
+		{
+			final Node node = stack.pop();
+			final int i = nodes.size();
+			parent[i] = stackParent.pop();
+			nodes.add(node);
+			index.put(node.key, i);
+			if(node.right != null)
+			{
+				stack.push(node.right);
+				stackParent.push(i);
+			}
+			if(node.left != null)
+			{
+				stack.push(node.left);
+				stackParent.push(i);
+			}
+		}
+		
+		//attach each query to both of its nodes, as linked lists threaded through arrays
+		final int q = queries.size();
+		final int[] end1 = new int[q];
+		final int[] end2 = new int[q];
+		final int[] head = new int[n];
+		final int[] next = new int[2 * q];
+		Arrays.fill(head, -1);
+		int j = 0;
+		for(final Pair<Key, Key> query : queries)
+		{
+			final Integer i1 = query.first() == null ? null : index.get(query.first());
+			final Integer i2 = query.second() == null ? null : index.get(query.second());
+			end1[j] = i1 == null ? -1 : i1;
+			end2[j] = i2 == null ? -1 : i2;
+			if(i1 != null && i2 != null)
+			{
+				next[2 * j] = head[i1];
+				head[i1] = 2 * j;
+				next[2 * j + 1] = head[i2];
+				head[i2] = 2 * j + 1;
+			}
+			j++;
+		}
+		
+		//the reverse of a pre-order is a post-order (visiting right subtrees first), 
+		//so every node is finished after all of its descendants
+		final int[] set = new int[n];
+		final int[] rank = new int[n];
+		final int[] ancestor = new int[n];
+		final boolean[] finished = new boolean[n];
+		final int[] lca = new int[q];
+		Arrays.fill(lca, -1);
+		for(int i = 0; i < n; i++)
+		{
+			set[i] = i;
+			ancestor[i] = i;
+		}
+		for(int u = n - 1; u >= 0; u--)
+		{
+			finished[u] = true;
+			for(int e = head[u]; e != -1; e = next[e])
+			{
+				final int query = e / 2;
+				final int other = (e % 2 == 0) ? end2[query] : end1[query];
+				if(finished[other])
+					lca[query] = ancestor[find(set, other)];
+			}
+			if(parent[u] != -1)
+			{
+				final int p = parent[u];
+				final int r = union(set, rank, u, p);
+				ancestor[r] = p;
+			}
+		}
+		
+		//LCA excludes the keys themselves, so when one key is the ancestor of the other, answer with its parent
+		final List<Key> result = new ArrayList<>(q);
+		for(j = 0; j < q; j++)
+		{
+			int c = lca[j];
+			if(c != -1 && (c == end1[j] || c == end2[j]))
+				c = parent[c];
+			result.add(c == -1 ? null : nodes.get(c).key);
+		}
+		return result;
+	}
+	
+	private static int find(final int[] set, int i)
+	{
+		int root = i;
+		while(set[root] != root)
+			root = set[root];
+		while(set[i] != root)
+		{
+			final int next = set[i];
+			set[i] = root;
+			i = next;
+		}
+		return root;
+	}
+	
+	private static int union(final int[] set, final int[] rank, final int a, final int b)
+	{
+		final int rootA = find(set, a);
+		final int rootB = find(set, b);
+		if(rootA == rootB)
+			return rootA;
+		if(rank[rootA] < rank[rootB])
+		{
+			set[rootA] = rootB;
+			return rootB;
+		}
+		set[rootB] = rootA;
+		if(rank[rootA] == rank[rootB])
+			rank[rootA]++;
+		return rootA;
 	}
 	
 }
\ No newline at end of file
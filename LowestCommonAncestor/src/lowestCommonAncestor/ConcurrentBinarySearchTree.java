@@ -0,0 +1,48 @@
+package lowestCommonAncestor;
+
+import java.util.Iterator;
+
+/**
+ * Thread-safe binary search tree whose readers never block.
+ * The tree copies on write (see BinarySearchTree): get, contains, median, LCA and every other read
+ * works on whichever version of the tree was published when it started, with no locking at all.
+ * Writers take turns on the tree's monitor, each one publishing a new version when it is done.
+ */
+public class ConcurrentBinarySearchTree<Key extends Comparable<Key>, Value> extends BinarySearchTree<Key, Value> {
+
+	/**
+	 * Creates an empty tree that never rebalances, so its shape depends on the insertion order.
+	 */
+	public ConcurrentBinarySearchTree()
+	{
+		this(false);
+	}
+
+	/**
+	 * Creates an empty tree.
+	 *
+	 * @param balanced true to rebalance on every put and delete
+	 */
+	public ConcurrentBinarySearchTree(boolean balanced)
+	{
+		super(balanced, true);
+	}
+
+	@Override
+	public synchronized void put(Key key, Value val)
+	{
+		super.put(key, val);
+	}
+
+	@Override
+	public synchronized void putAll(Iterator<Pair<Key, Value>> entries)
+	{
+		super.putAll(entries);
+	}
+
+	@Override
+	public synchronized void delete(Key key)
+	{
+		super.delete(key);
+	}
+}
@@ -0,0 +1,348 @@
+package lowestCommonAncestor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Directed acyclic graph that many threads can build at once with addNode and addEdge.
+ * Queries are made on a DirectedAcyclicGraph taken with snapshot().
+ *
+ * Nodes live in a concurrent map, and each node is guarded by one of a fixed set of striped locks: a node's
+ * edges and its place in the topological order only change while its stripe is locked. As in
+ * DirectedAcyclicGraph, every node has an ord and every edge goes from a lower ord to a higher one.
+ * An edge v -> w with v.ord < w.ord cannot close a cycle, so it only locks the stripes of v and w.
+ * Otherwise the Pearce-Kelly search runs over the nodes with ords between w.ord and v.ord, first without
+ * locking to find the stripes of the nodes it would reorder and of their neighbours, then again with that
+ * region locked. If the second search stays inside the locked stripes its answer is final: the edge closes
+ * a cycle exactly when w reaches v, and otherwise the searched nodes are reordered. If the region grew in
+ * between, the locks are released and the insert starts again. Inserts whose regions share no stripe run
+ * in parallel.
+ */
+public class ConcurrentDirectedAcyclicGraph<Key extends Comparable<Key>, Value> {
+	private static final int STRIPES = 64;	// number of locks, a power of two
+
+	/**
+	 * Internal node class.
+	 */
+	private final class Node {
+		private final Key key;				// unique identifying attribute
+		private final Value val;			// associated data
+		private final int id;				// position in insertion order, used to index bitsets
+		private volatile int ord;			// position in the topological order, changed under its stripe's lock
+		private final Edges destinations = new Edges();	// nodes this has edges to
+		private final Edges ancestors = new Edges();	// nodes that have edges to this
+
+		private Node(final Key key, final Value val, final int id)
+		{
+			this.key = key;
+			this.val = val;
+			this.id = id;
+			this.ord = id; //a new node has no edges, so it can go last in the order
+		}
+	}
+
+	/**
+	 * The nodes at the other end of one side of a node's edges, in a growable array.
+	 * It is only added to under the node's stripe lock. Readers do not lock: they read size first and then
+	 * nodes, and since an add writes the slot and publishes a grown array before it raises size, they
+	 * always see at least size filled slots.
+	 */
+	private final class Edges {
+		private volatile Node[] nodes = newArray(4);
+		private volatile int size;
+
+		private void add(final Node node)
+		{
+			Node[] array = nodes;
+			if(size == array.length)
+			{
+				array = Arrays.copyOf(array, size * 2);
+				array[size] = node;
+				nodes = array;
+			}
+			else
+				array[size] = node;
+			size = size + 1;
+		}
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private Node[] newArray(final int length)
+	{
+		return (Node[]) new ConcurrentDirectedAcyclicGraph.Node[length];
+	}
+
+	// outcome of a search for a cycle
+	private enum Region { ACYCLIC, CYCLIC, GREW }
+
+	private final Map<Key, Node> nodes = new ConcurrentHashMap<>();	// all nodes in the graph indexed by key
+	private final AtomicInteger E = new AtomicInteger();			// amount of edges in whole graph
+	private final AtomicInteger nextId = new AtomicInteger();		// id (and initial ord) handed out to the next node created
+	private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+	public ConcurrentDirectedAcyclicGraph()
+	{
+		for(int i = 0; i < STRIPES; i++)
+			stripes[i] = new ReentrantLock();
+	}
+
+	/**
+	 * Adds a node to the graph. Nothing happens if the key or value is null, or if
+	 * the graph already contains a node with an equal key.
+	 */
+	public void addNode(final Key key, final Value val)
+	{
+		if(key != null && val != null && !nodes.containsKey(key))
+			nodes.putIfAbsent(key, new Node(key, val, nextId.getAndIncrement()));
+	}
+
+	private Node get(final Key key)
+	{
+		return key == null ? null : nodes.get(key);
+	}
+
+	public boolean isValidNode(final Key key)
+	{
+		return get(key) != null;
+	}
+
+	//Returns amount of nodes in whole graph
+	public int N()
+	{
+		return nodes.size();
+	}
+
+	//Returns amount of edges in whole graph
+	public int E()
+	{
+		return E.get();
+	}
+
+	public int outdegree(final Key key)
+	{
+		final Node node = get(key);
+		return node == null ? -1 : node.destinations.size;
+	}
+
+	private int stripe(final Node node)
+	{
+		final int h = node.key.hashCode();
+		return (h ^ (h >>> 16)) & (STRIPES - 1);
+	}
+
+	// locks the given stripes in increasing order, so that two threads can never wait for each other
+	private void lock(final BitSet locked)
+	{
+		for(int i = locked.nextSetBit(0); i >= 0; i = locked.nextSetBit(i + 1))
+			stripes[i].lock();
+	}
+
+	private void unlock(final BitSet locked)
+	{
+		for(int i = locked.nextSetBit(0); i >= 0; i = locked.nextSetBit(i + 1))
+			stripes[i].unlock();
+	}
+
+	/**
+	 * Adds a directed edge from v to w, unless it would close a cycle.
+	 * @param v (key of source node)
+	 * @param w (key of destination node)
+	 * @return true if adding the edge kept the graph acyclic, false if otherwise or if either key is invalid
+	 */
+	public boolean addEdge(final Key v, final Key w)
+	{
+		final Node source = get(v);
+		final Node dest = get(w);
+		if(source == null || dest == null || source == dest)
+			return false;
+		final BitSet region = new BitSet(STRIPES);
+		while(true)
+		{
+			region.clear();
+			region.set(stripe(source));
+			region.set(stripe(dest));
+			if(reorder(source, dest, region, false) == Region.CYCLIC)
+				return false;
+			lock(region);
+			try
+			{
+				final Region checked = reorder(source, dest, region, true);
+				if(checked == Region.CYCLIC)
+					return false;
+				if(checked == Region.ACYCLIC)
+				{
+					source.destinations.add(dest);
+					dest.ancestors.add(source);
+					E.incrementAndGet();
+					return true;
+				}
+			}
+			finally
+			{
+				unlock(region);
+			}
+		}
+	}
+
+	/**
+	 * The Pearce-Kelly search of DirectedAcyclicGraph.reorder for a new edge source -> dest: nothing is searched
+	 * if source already comes before dest, else the nodes reachable from dest with ords below source's and
+	 * the nodes that reach source with ords above dest's.
+	 * Without locks it adds to region the stripe of every node it would reorder and of all their neighbours,
+	 * whose ords and edges the reordering depends on. With the region locked it gives up as soon as it meets
+	 * a node outside the region, and otherwise hands the searched nodes' ords back out so the edge can be added.
+	 *
+	 * @return CYCLIC if dest reaches source, GREW if a locked search left the region, else ACYCLIC
+	 */
+	private Region reorder(final Node source, final Node dest, final BitSet region, final boolean locked)
+	{
+		final int lowerBound = dest.ord;
+		final int upperBound = source.ord;
+		if(lowerBound > upperBound)
+			return Region.ACYCLIC;
+
+		//forward search from dest through nodes ordered before source
+		final List<Node> forward = new ArrayList<>();
+		final BitSet visited = new BitSet();
+		final Deque<Node> stack = new ArrayDeque<>();
+		visited.set(dest.id);
+		stack.push(dest);
+		while(!stack.isEmpty())
+		{
+			final Node node = stack.pop();
+			forward.add(node);
+			if(!claim(node.ancestors, region, locked))
+				return Region.GREW;
+			final int size = node.destinations.size;
+			final Node[] destinations = node.destinations.nodes;
+			for(int i = 0; i < size; i++)
+			{
+				final Node next = destinations[i];
+				if(next == source)
+					return Region.CYCLIC;
+				if(!claim(next, region, locked))
+					return Region.GREW;
+				if(next.ord < upperBound && !visited.get(next.id))
+				{
+					visited.set(next.id);
+					stack.push(next);
+				}
+			}
+		}
+
+		//backward search from source through nodes ordered after dest
+		final List<Node> backward = new ArrayList<>();
+		visited.set(source.id);
+		stack.push(source);
+		while(!stack.isEmpty())
+		{
+			final Node node = stack.pop();
+			backward.add(node);
+			if(!claim(node.destinations, region, locked))
+				return Region.GREW;
+			final int size = node.ancestors.size;
+			final Node[] ancestors = node.ancestors.nodes;
+			for(int i = 0; i < size; i++)
+			{
+				final Node prev = ancestors[i];
+				if(!claim(prev, region, locked))
+					return Region.GREW;
+				if(prev.ord > lowerBound && !visited.get(prev.id))
+				{
+					visited.set(prev.id);
+					stack.push(prev);
+				}
+			}
+		}
+		if(!locked)
+			return Region.ACYCLIC;
+
+		//hand the ords used by both sets back out, backward set first
+		final Comparator<Node> byOrd = Comparator.comparingInt(node -> node.ord);
+		forward.sort(byOrd);
+		backward.sort(byOrd);
+		final int[] ords = new int[forward.size() + backward.size()];
+		int i = 0;
+		for(final Node node : backward)
+			ords[i++] = node.ord;
+		for(final Node node : forward)
+			ords[i++] = node.ord;
+		Arrays.sort(ords);
+		i = 0;
+		for(final Node node : backward)
+			node.ord = ords[i++];
+		for(final Node node : forward)
+			node.ord = ords[i++];
+		return Region.ACYCLIC;
+	}
+
+	/**
+	 * Without locks adds the stripe of node to region; with the region locked checks that it is in it.
+	 *
+	 * @return false if a locked search met a node outside the region
+	 */
+	private boolean claim(final Node node, final BitSet region, final boolean locked)
+	{
+		if(!locked)
+			region.set(stripe(node));
+		return region.get(stripe(node));
+	}
+
+	// claims every node in edges
+	private boolean claim(final Edges edges, final BitSet region, final boolean locked)
+	{
+		final int size = edges.size;
+		final Node[] array = edges.nodes;
+		for(int i = 0; i < size; i++)
+		{
+			if(!claim(array[i], region, locked))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Copies the graph into a DirectedAcyclicGraph, with the nodes in the order they were added and
+	 * the edges in node order. Edge inserts wait while the edges are copied, so the copy holds exactly
+	 * the edges added before it; the copy is then built with a single addEdges.
+	 *
+	 * @return a graph with the same nodes and edges, which later changes to this graph do not affect
+	 */
+	public DirectedAcyclicGraph<Key, Value> snapshot()
+	{
+		final List<Node> sorted;
+		final List<Pair<Key, Key>> edges = new ArrayList<>();
+		final BitSet all = new BitSet(STRIPES);
+		all.set(0, STRIPES);
+		lock(all);
+		try
+		{
+			sorted = new ArrayList<>(nodes.values());
+			sorted.sort(Comparator.comparingInt(node -> node.id));
+			for(final Node node : sorted)
+			{
+				final Node[] destinations = node.destinations.nodes;
+				for(int i = 0; i < node.destinations.size; i++)
+					edges.add(Pair.of(node.key, destinations[i].key));
+			}
+		}
+		finally
+		{
+			unlock(all);
+		}
+		final DirectedAcyclicGraph<Key, Value> graph = new DirectedAcyclicGraph<>();
+		for(final Node node : sorted)
+			graph.addNode(node.key, node.val);
+		graph.addEdges(edges);
+		return graph;
+	}
+}
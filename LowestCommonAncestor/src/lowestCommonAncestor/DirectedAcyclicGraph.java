@@ -8,9 +8,15 @@ package lowestCommonAncestor;
 
 import java.util.ArrayList;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
 
+/**
+ * Every traversal keeps its visited marks to itself, so the queries (LCA, topologicalSort, isReachable, freeze 
+ * and the rest) may run from any number of threads at once, as long as no thread changes the graph meanwhile.
+ */
 public class DirectedAcyclicGraph<Key extends Comparable<Key>, Value> {
+	private static final int PROGRESS_INTERVAL = 1 << 16;	// edges appended between progress reports of a bulk addEdges
 
 	/**
 	 * Internal node class.
@@ -22,14 +28,15 @@ public class DirectedAcyclicGraph<Key extends Comparable<Key>, Value> {
 		private final ArrayList<Key> ancestors;		// list of nodes that can reach this node 	
 		private int indegree;						// the number of directed edges entering this
 		private int outdegree;						// the number of directed edges leaving this
-		private boolean visited;					// variable used for topological sort
+		private int id;								// dense identifier, used to index bitsets
+		private int ord;							// position in the topological order maintained by addEdge
+		private int depth;							// length of the longest path from any root to this
 		
 		public Node(Key key, Value val) {
 			this.val = val;
 			this.key = key;
 			this.destinations = new ArrayList<Key>();
 			this.ancestors = new ArrayList<Key>();
-			this.visited = false;
 		}
 		
 		public Key key()
@@ -48,24 +55,31 @@ public class DirectedAcyclicGraph<Key extends Comparable<Key>, Value> {
 		}
 	}
 	
-	private final List<Node> nodes; 	// List of all nodes in the graph
+	private final Map<Key, Node> nodes; 	// All nodes in the graph indexed by key, kept in insertion order
 	private int E;							// Amount of edges in whole graph
+	private int nextId;						// id (and initial ord) handed out to the next node added
+	private volatile FrozenDirectedAcyclicGraph<Key, Value> frozen;	// built on demand, dropped whenever the graph changes
 
 	public DirectedAcyclicGraph() {
-		nodes = new ArrayList<Node>();
+		nodes = new LinkedHashMap<Key, Node>();
 		E = 0;
+		nextId = 0;
 	}
 	
+	/**
+	 * Adds a node to the graph. Nothing happens if the key or value is null, or if
+	 * the graph already contains a node with an equal key.
+	 * Keys are indexed by hash, so their equals/hashCode must be consistent with compareTo.
+	 */
 	public void addNode(Key key, Value val) 
 	{
 		if(key != null && val != null) {
-			//check for nodes with the same key
-			for(final Node node : nodes)
+			final Node node = new Node(key, val);
+			if(this.nodes.putIfAbsent(key, node) == null)
 			{
-				if(node.key() == key) 
-					return;
+				node.id = node.ord = nextId++; //a new node has no edges, so it can go last in the order
+				frozen = null;
 			}
-			this.nodes.add(new Node(key, val));
 		}
 	}
 	
@@ -74,30 +88,38 @@ public class DirectedAcyclicGraph<Key extends Comparable<Key>, Value> {
 		return get(key, this.nodes);
 	}
 	
-	private Node get(final Key key, final List<Node> graph)
+	private Node get(final Key key, final Map<Key, Node> graph)
 	{
 		if(key != null)
-		{
-			for(final Node node : graph) {
-				if(key.compareTo(node.key) == 0) {
-					return node;
-				}
-			}
-		}
+			return graph.get(key);
 		return null;
 	}
 	
-	private void resetVisited()
+	/**
+	 * Marks a node in the visited set of a single traversal. Traversals keep their own set, keyed by Node.id,
+	 * instead of a flag on the node, so they need no reset first and concurrent readers cannot disturb each other.
+	 * 
+	 * @return true if the node was not marked yet
+	 */
+	private boolean mark(final BitSet marked, final Node node)
 	{
-		for(final Node node : this.nodes)
-		{
-			node.visited = false;
-		}
+		if(marked.get(node.id))
+			return false;
+		marked.set(node.id);
+		return true;
 	}
 	
  	public boolean deleteNode(final Key key)
 	{
-		return deleteNode(key, this.nodes);
+ 		final Node toBeDel = get(key);
+ 		if(toBeDel == null)
+ 			return false;
+ 		this.E -= toBeDel.indegree + toBeDel.outdegree;
+ 		frozen = null;
+ 		final List<Key> destinations = new ArrayList<>(toBeDel.destinations);
+ 		deleteNode(key, this.nodes);
+ 		lowerDepths(destinations);
+ 		return true;
 	}
 
  	/**
@@ -105,27 +127,27 @@ public class DirectedAcyclicGraph<Key extends Comparable<Key>, Value> {
  	 * @param key
  	 * @return true if graph contained the node and it has been removed
  	 */
- 	private boolean deleteNode(final Key key, final List<Node> graph)
+ 	private boolean deleteNode(final Key key, final Map<Key, Node> graph)
  	{
  		final Node toBeDel = get(key, graph);
  		if(toBeDel == null) 
  			return false;
  		else {
- 			//need to iterate through all the nodes and remove the soon to 
- 			//be deleted node's key from any destinations lists, reduce E, and 
- 			//the source node's outdegree
- 			for(final Node node : graph)
+ 			//the node's own adjacency lists say exactly which nodes hold a 
+ 			//reference to it, so only those need to be visited
+ 			for(final Key ancestor : toBeDel.ancestors)
  			{
- 				if(node.destinations.contains(key))
- 				{
- 					node.destinations.remove(key);
- 					node.outdegree--;
- 					toBeDel.indegree--;
- 					toBeDel.ancestors.remove(key);
- 				}
+ 				final Node source = graph.get(ancestor);
+ 				source.destinations.remove(key);
+ 				source.outdegree--;
  			}
- 			graph.remove(toBeDel);
- 			this.E -= (toBeDel.destinations.size());
+ 			for(final Key destination : toBeDel.destinations)
+ 			{
+ 				final Node dest = graph.get(destination);
+ 				dest.ancestors.remove(key);
+ 				dest.indegree--;
+ 			}
+ 			graph.remove(key);
  			return true;
  		}
  	}
@@ -155,23 +177,17 @@ public class DirectedAcyclicGraph<Key extends Comparable<Key>, Value> {
 		
 		if(source != null && dest != null)
 		{
+			if(!reorder(source, dest))
+				return false;
 			source.destinations.add(w);
 			source.outdegree++;
 			dest.indegree++; 
 			dest.ancestors.add(v);
 			E++;
-			if(!this.isAcyclic())
-			{
-				//undo the addEdge
-				source.destinations.remove(w);
-				source.outdegree--;
-				dest.indegree--; 
-				dest.ancestors.remove(v);
-				E--;
-				return false;
-			}
-			else
-				return true;
+			frozen = null;
+			if(source.depth + 1 > dest.depth)
+				raiseDepths(dest, source.depth + 1);
+			return true;
 		}
 		else
 		{
@@ -180,65 +196,301 @@ public class DirectedAcyclicGraph<Key extends Comparable<Key>, Value> {
 		}		
 	}
 
-	public boolean isAcyclic()
+	/**
+	 * Keeps the topological order (Node.ord) valid for a new edge source -> dest, using the
+	 * Pearce-Kelly dynamic topological sort algorithm.
+	 * If source already comes before dest nothing needs to be done. Otherwise only the nodes
+	 * whose ord lies between dest.ord and source.ord are searched: those reachable from dest
+	 * and those that can reach source. If dest reaches source the edge would close a cycle,
+	 * else the two sets are shuffled so that everything reaching source comes first.
+	 * 
+	 * @param source
+	 * @param dest
+	 * @return false if the edge would create a cycle (the order is left untouched)
+	 */
+	private boolean reorder(final Node source, final Node dest)
 	{
-		return isAcyclic(cloneGraph());
+		if(source == dest)
+			return false;
+		final int lowerBound = dest.ord;
+		final int upperBound = source.ord;
+		if(lowerBound > upperBound)
+			return true;
+		
+		//forward search from dest through nodes ordered before source
+		final List<Node> forward = new ArrayList<>();
+		final BitSet seen = new BitSet();
+		final Deque<Node> stack = new ArrayDeque<>();
+		seen.set(dest.id);
+		stack.push(dest);
+		while(!stack.isEmpty())
+		{
+			final Node node = stack.pop();
+			forward.add(node);
+			for(final Key key : node.destinations)
+			{
+				final Node next = get(key);
+				if(next == source)
+					return false; //dest can reach source
+				if(next.ord < upperBound && mark(seen, next))
+					stack.push(next);
+			}
+		}
+		
+		//backward search from source through nodes ordered after dest
+		final List<Node> backward = new ArrayList<>();
+		seen.set(source.id);
+		stack.push(source);
+		while(!stack.isEmpty())
+		{
+			final Node node = stack.pop();
+			backward.add(node);
+			for(final Key key : node.ancestors)
+			{
+				final Node prev = get(key);
+				if(prev.ord > lowerBound && mark(seen, prev))
+					stack.push(prev);
+			}
+		}
+		
+		//hand the ords used by both sets back out, backward set first
+		final Comparator<Node> byOrd = Comparator.comparingInt(node -> node.ord);
+		forward.sort(byOrd);
+		backward.sort(byOrd);
+		final int[] ords = new int[forward.size() + backward.size()];
+		int i = 0;
+		for(final Node node : backward)
+			ords[i++] = node.ord;
+		for(final Node node : forward)
+			ords[i++] = node.ord;
+		Arrays.sort(ords);
+		i = 0;
+		for(final Node node : backward)
+			node.ord = ords[i++];
+		for(final Node node : forward)
+			node.ord = ords[i++];
+		return true;
+	}
+
+	/**
+	 * Propagates a longer path into node down through its descendants.
+	 * Nodes are visited in topological order (by ord), so each one is settled before its 
+	 * destinations are looked at and only nodes whose depth actually grows are visited.
+	 * 
+	 * @param node
+	 * @param depth new depth of node
+	 */
+	private void raiseDepths(final Node node, final int depth)
+	{
+		node.depth = depth;
+		final PriorityQueue<Node> queue = new PriorityQueue<>(Comparator.comparingInt(n -> n.ord));
+		final BitSet queued = new BitSet();
+		queued.set(node.id);
+		queue.add(node);
+		while(!queue.isEmpty())
+		{
+			final Node current = queue.poll();
+			for(final Key key : current.destinations)
+			{
+				final Node dest = get(key);
+				if(current.depth + 1 > dest.depth)
+				{
+					dest.depth = current.depth + 1;
+					if(mark(queued, dest))
+						queue.add(dest);
+				}
+			}
+		}
 	}
 	
 	/**
-	 * Original pseudo-code algorithm from https://www.cs.hmc.edu/~keller/courses/cs60/s98/examples/acyclic/
-	 * @param graph
-	 * @return
+	 * Recomputes depths after edges into the given nodes have been removed.
+	 * A node's depth is one more than its deepest ancestor's, so nodes are recomputed in 
+	 * topological order and the change is only passed on to destinations when it changed.
+	 * 
+	 * @param keys nodes that lost an incoming edge
 	 */
-	private boolean isAcyclic(final List<Node> graph)
+	private void lowerDepths(final List<Key> keys)
 	{
-		final int size = graph.size();
-		for(int i = 0 ; i <= size; i++)
+		final PriorityQueue<Node> queue = new PriorityQueue<>(Comparator.comparingInt(n -> n.ord));
+		final BitSet queued = new BitSet();
+		for(final Key key : keys)
 		{
-			if(graph.size() == 0)
-				return true; //If the graph has no nodes, stop. The graph is acyclic.
-			else {
-				final Node leaf = getLeaf(graph);
-				if(leaf == null)
-					return false; //If the graph has no leaf, stop. The graph is cyclic.
-				else 
-					deleteNode(leaf.key(), graph); //Choose a leaf of the graph. Remove this leaf and all edges going into the leaf to get a new graph.
+			final Node node = get(key);
+			if(mark(queued, node))
+				queue.add(node);
+		}
+		while(!queue.isEmpty())
+		{
+			final Node node = queue.poll();
+			int depth = 0;
+			for(final Key key : node.ancestors)
+				depth = Math.max(depth, get(key).depth + 1);
+			if(depth != node.depth)
+			{
+				node.depth = depth;
+				for(final Key key : node.destinations)
+				{
+					final Node dest = get(key);
+					if(mark(queued, dest))
+						queue.add(dest);
+				}
 			}
 		}
+	}
+
+	/**
+	 * Adds many directed edges at once, with a single cycle check at the end instead of one per edge.
+	 * The edges are appended first, then one pass of Kahn's algorithm over the whole graph checks that it is
+	 * still acyclic and, if so, hands out new topological positions and depths: O(N + E) for the whole batch.
+	 * The batch is all or nothing. If an edge has a key that is not in the graph, joins a node to itself, or
+	 * the edges together close a cycle, none of them is added.
+	 * 
+	 * @param edges pairs of (key of source node, key of destination node)
+	 * @return true if every edge was added, false if the graph was left unchanged
+	 */
+	public boolean addEdges(final Iterable<Pair<Key, Key>> edges)
+	{
+		final List<Node> added = new ArrayList<>();	//source and destination of each edge, in turn
+		for(final Pair<Key, Key> edge : edges)
+		{
+			final Node source = get(edge.first());
+			final Node dest = get(edge.second());
+			if(source == null || dest == null || source == dest)
+				return false;
+			added.add(source);
+			added.add(dest);
+		}
+		for(int i = 0; i < added.size(); i += 2)
+			append(added.get(i), added.get(i + 1));
+		this.E += added.size() / 2;
+		
+		if(!reorderAll())
+		{
+			//take the edges out again, newest first, so each one is still at the end of its lists
+			for(int i = added.size() - 2; i >= 0; i -= 2)
+				retract(added.get(i), added.get(i + 1));
+			this.E -= added.size() / 2;
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Same as addEdges(Iterable), for edges whose ends are given as ints, such as the edges EdgeListLoader reads.
+	 * The edges are appended as they are checked, and looked up again only if they have to be taken out, so
+	 * the batch takes no memory beyond the edges the graph stores.
+	 * 
+	 * @param sources source of each edge, as an int that keys turns into its key
+	 * @param targets destination of each edge, likewise
+	 * @param count number of edges, from the start of both arrays
+	 * @param keys turns an int into the key it stands for
+	 * @param progress told how many edges have been appended every 65536 edges, before the cycle check; may be null
+	 * @return true if every edge was added, false if the graph was left unchanged
+	 */
+	boolean addEdges(final int[] sources, final int[] targets, final int count, final IntFunction<Key> keys, final IntConsumer progress)
+	{
+		int appended = 0;
+		for(; appended < count; appended++)
+		{
+			final Node source = get(keys.apply(sources[appended]));
+			final Node dest = get(keys.apply(targets[appended]));
+			if(source == null || dest == null || source == dest)
+				break;
+			append(source, dest);
+			if(progress != null && (appended + 1) % PROGRESS_INTERVAL == 0)
+				progress.accept(appended + 1);
+		}
+		if(appended == count && reorderAll())
+		{
+			this.E += count;
+			return true;
+		}
+		for(int i = appended - 1; i >= 0; i--)
+			retract(get(keys.apply(sources[i])), get(keys.apply(targets[i])));
 		return false;
 	}
 
-	private List<Node> cloneGraph() 
+	// adds the edge source -> dest at the end of both nodes' lists, leaving the order and depths alone
+	private void append(final Node source, final Node dest)
 	{
-		final List<Node> graphCopy = new ArrayList<>(this.nodes.size());
-		for(final Node node : this.nodes) 
+		source.destinations.add(dest.key);
+		source.outdegree++;
+		dest.ancestors.add(source.key);
+		dest.indegree++;
+	}
+
+	// takes out the edge source -> dest, which must be the last edge in both nodes' lists
+	private void retract(final Node source, final Node dest)
+	{
+		source.destinations.remove(source.destinations.size() - 1);
+		source.outdegree--;
+		dest.ancestors.remove(dest.ancestors.size() - 1);
+		dest.indegree--;
+	}
+
+	/**
+	 * Hands out new topological positions and depths to every node after a batch of edges, with one pass
+	 * of Kahn's algorithm.
+	 * 
+	 * @return false if the graph has a cycle, in which case nothing was changed
+	 */
+	private boolean reorderAll()
+	{
+		final int[] depths = new int[nextId];
+		final List<Node> order = topologicalNodes(depths);
+		if(order == null)
+			return false;
+		for(int i = 0; i < order.size(); i++)
 		{
-			final Node copy = new Node(node.key(), node.val());
-			//copy original node's destinations list to the copy node
-			copy.destinations.addAll(node.destinations);
-			copy.indegree = node.indegree;
-			copy.outdegree = node.outdegree;
-			copy.ancestors.addAll(node.ancestors);
-			graphCopy.add(copy);
+			final Node node = order.get(i);
+			node.ord = i;
+			node.depth = depths[node.id];
 		}
-		return graphCopy;
+		frozen = null;
+		return true;
 	}
-		
+
 	/**
-	 * Searches a provided graph for a leaf node.
-	 * A leaf is a node with no targets (no outgoing edges)
-	 * @param nodes
-	 * @return a node or null if there is no leaf in the provides graph
+	 * Checks that the graph has no cycle, with Kahn's algorithm in O(N + E).
+	 * addEdge and addEdges never let a cycle in, so this always holds.
 	 */
-	private Node getLeaf(final List<Node> graph) 
+	public boolean isAcyclic()
 	{
-		for(final Node node : graph) 
+		return topologicalNodes(null) != null;
+	}
+	
+	/**
+	 * Kahn's algorithm: repeatedly takes out a node that no remaining edge enters.
+	 * The list of nodes taken out so far doubles as the queue of nodes still to process.
+	 * 
+	 * @param depths if not null, filled in by id with the length of the longest path from any root to each node;
+	 * a node's ancestors are all taken out before it, so its depth is final by the time its edges are followed
+	 * @return all nodes in a topological order, or null if the graph has a cycle (some nodes are never free of incoming edges)
+	 */
+	private List<Node> topologicalNodes(final int[] depths)
+	{
+		final int[] indegree = new int[nextId];
+		final List<Node> order = new ArrayList<>(this.nodes.size());
+		for(final Node node : this.nodes.values())
+		{
+			indegree[node.id] = node.indegree;
+			if(node.indegree == 0)
+				order.add(node);
+		}
+		for(int i = 0; i < order.size(); i++)
 		{
-			if(node.outdegree == 0) {
-				return node;
+			final Node node = order.get(i);
+			for(final Key key : node.destinations)
+			{
+				final Node dest = get(key);
+				if(depths != null)
+					depths[dest.id] = Math.max(depths[dest.id], depths[node.id] + 1);
+				if(--indegree[dest.id] == 0)
+					order.add(dest);
 			}
 		}
-		return null;
+		return order.size() == this.nodes.size() ? order : null;
 	}
 	
  	public boolean isValidNode(final Key key)
@@ -248,15 +500,8 @@ public class DirectedAcyclicGraph<Key extends Comparable<Key>, Value> {
  	
  	public boolean isValidNode(final Key key, final Value val)
  	{
- 		if(key != null && val != null)
- 		{
- 			for(final Node node : nodes) {
- 				if(key.compareTo(node.key) == 0 && val.equals(node.val())) {
- 					return true;
- 				}
- 			}
- 		}
- 		return false;
+ 		final Node node = get(key);
+ 		return node != null && val != null && val.equals(node.val());
  	}
 	
 	public int indegree(final Key key)
@@ -277,150 +522,190 @@ public class DirectedAcyclicGraph<Key extends Comparable<Key>, Value> {
 			return -1;
 	}
 	
-	/*
-	 * The below implementation of topological sort was taken from https://www.geeksforgeeks.org/topological-sorting/
-	 * and edited for purpose by MollyCK
+	/**
+	 * Depth of a node: the number of edges on the longest path from any root to it.
+	 * Maintained by addEdge and deleteNode, so this is O(1).
+	 * 
+	 * @param key
+	 * @return the depth of the node, or -1 if there is no node with that key
 	 */
-	// A recursive function used by topologicalSort 
-    private void topologicalSortUtil(final Key v, final Deque<Key> stack) 
-    { 
-        // Mark the current node as visited. 
-        final Node node = get(v);
-        node.visited = true; 
-  
-        // Recur for all the vertices adjacent to this vertex 
-        for(final Key key : node.destinations) 
-        {
-            if (!get(key).visited) 
-                topologicalSortUtil(key, stack); 
-        } 
-  
-        // Push current vertex to stack which stores result 
-        stack.push(v); 
-    } 
-  
-    // The function to do Topological Sort. 
-    // It uses recursive topologicalSortUtil() 
-    public String topologicalSort() 
-    { 
-        final Deque<Key> stack = new ArrayDeque<Key>(); 
-        
-        resetVisited();
-        
-        // Call the recursive helper function to store Topological Sort 
-        // starting from all vertices one by one 
-        for (final Node node : this.nodes) {
-            if (!node.visited) 
-                topologicalSortUtil(node.key(), stack); 
-        }
-        
-        // Concatenate contents of stack into a String
-        final StringBuilder result = new StringBuilder();
-        while (stack.size() > 0) 
-            result.append(stack.pop()).append(" "); 
-        return result.toString();
-    } 
-
-    /**
-     * Given a node (key) in the graph, recursively traverse backwards through all ancestors and build a list of all the 
-     * possible paths through the DAG rooted at the given node
-     * 
-     * @param srcKey Starting node
-     * @return A list of all paths starting at the given node. Each path is a list of Keys
-     */
-	private List<List<Key>> getPaths(final Key srcKey) 
+	public int depth(final Key key)
 	{
-		final Node srcNode = get(srcKey);
-		if(srcNode == null)
-			return null;
-		else {
-			final List<List<Key>> paths = new ArrayList<>();
-			buildPaths(srcKey, paths, new ArrayList<>());
-			
-			return paths;
+		final Node node = get(key);
+		if(node != null)
+			return node.depth;
+		else
+			return -1;
+	}
+	
+	/**
+	 * Immutable snapshot of the graph in compressed sparse row form, see FrozenDirectedAcyclicGraph.
+	 * The snapshot is built in O(N + E) on the first call after the graph changes, and handed out again
+	 * until the next change, so it is cheap to call freeze() when queries far outnumber updates.
+	 * Later changes to the graph never show up in a snapshot that was already handed out.
+	 * 
+	 * @return the current graph, frozen
+	 */
+	public FrozenDirectedAcyclicGraph<Key, Value> freeze()
+	{
+		FrozenDirectedAcyclicGraph<Key, Value> frozen = this.frozen;
+		if(frozen == null)
+		{
+			final int n = this.nodes.size();
+			final Map<Key, Integer> ids = new HashMap<>(n * 2);
+			final Object[] keys = new Object[n];
+			final Object[] vals = new Object[n];
+			final int[] depth = new int[n];
+			int i = 0;
+			for(final Node node : this.nodes.values())
+			{
+				ids.put(node.key, i);
+				keys[i] = node.key;
+				vals[i] = node.val;
+				depth[i] = node.depth;
+				i++;
+			}
+			final int[] offsets = new int[n + 1];
+			final int[] targets = new int[this.E];
+			final int[] reverseOffsets = new int[n + 1];
+			final int[] sources = new int[this.E];
+			int e = 0;
+			int r = 0;
+			i = 0;
+			for(final Node node : this.nodes.values())
+			{
+				offsets[i] = e;
+				reverseOffsets[i] = r;
+				for(final Key key : node.destinations)
+					targets[e++] = ids.get(key);
+				for(final Key key : node.ancestors)
+					sources[r++] = ids.get(key);
+				i++;
+			}
+			offsets[n] = e;
+			reverseOffsets[n] = r;
+			frozen = new FrozenDirectedAcyclicGraph<>(keys, vals, ids, offsets, targets, reverseOffsets, sources, depth);
+			this.frozen = frozen;
 		}
+		return frozen;
 	}
 	
 	/**
-	 * Entry point for the recursion. It creates a new list of keys (path) and adds it to the list of paths (result)
+	 * Is there a path from v to w? A node can always reach itself.
+	 * Answered from the reachability index of the frozen graph, which is built on the first query after 
+	 * the graph changes, so this is cheap when queries far outnumber updates.
 	 * 
-	 * @param srcKey Starting node
-	 * @param paths List of paths (result)
-	 * @param accPath Accumulator used to build the path for the first ancestor through subsequent recursive calls
+	 * @param v (key of source node)
+	 * @param w (key of destination node)
+	 * @return true if both nodes exist and w can be reached from v
 	 */
-	private void buildPaths(final Key srcKey, final List<List<Key>> paths, final List<Key> accPath)
+	public boolean isReachable(final Key v, final Key w)
 	{
-		final List<Key> ancestorList = new ArrayList<>(accPath);
-		paths.add(ancestorList);
-		buildAncestorsPaths(srcKey, paths, ancestorList);
+		if(!isValidNode(v) || !isValidNode(w))
+			return false;
+		return freeze().isReachable(v, w);
 	}
 	
 	/**
-	 * Recursion down into the node's ancestors. The path through the first ancestor is accumulated into accPath.
-	 * For subsequent ancestors new path lists are created by calling back into buildPaths
+	 * Is ancestor an ancestor of node? As in LCA, a node counts as its own ancestor.
 	 * 
-	 * @param srcKey Starting node
-	 * @param paths List of paths (result)
-	 * @param accPath Accumulator used to build the path for the first ancestor through subsequent recursive calls
+	 * @param ancestor
+	 * @param node
+	 * @return true if both nodes exist and there is a path from ancestor to node
 	 */
-	private void buildAncestorsPaths(final Key srcKey, final List<List<Key>> paths, final List<Key> accPath)
+	public boolean isAncestor(final Key ancestor, final Key node)
 	{
-		accPath.add(srcKey);
-		
-		//We need to take a snapshot of the accumulator at this point as this is where all other ancestors branch off
-		final List<Key> accPathClone = new ArrayList<>(accPath);
-		final List<Key> srcNodeAncestors = get(srcKey).ancestors;
-		
-		if(!srcNodeAncestors.isEmpty()) {
-			//Process the first ancestor by recursively appending to the accumulator
-			final Key firstAncestor = srcNodeAncestors.get(0);
-			buildAncestorsPaths(firstAncestor, paths, accPath);
-			
-			//Process all remaining ancestors by recursively creating a new list for each one
-			for(final Key ancestor : srcNodeAncestors.subList(1, srcNodeAncestors.size())) 
-			{
-				//Here is where the accumulator snapshot is used
-				buildPaths(ancestor, paths, accPathClone);
-			}
-		}
+		return isReachable(ancestor, node);
 	}
 	
-	private List<Key> intersection(final List<Key> path1, final List<Key> path2)
+	/**
+	 * Topological order of the graph: every node comes before all of the nodes it has edges to.
+	 * This is the reverse post-order of a depth first search that starts from every node in insertion 
+	 * order, found in O(N + E) with an explicit stack, so long chains cannot overflow the call stack.
+	 * The order is computed with the frozen graph and kept until addNode, addEdge or deleteNode changes
+	 * the graph, so asking again costs nothing.
+	 * 
+	 * @return the keys in topological order, as a read-only list
+	 */
+	public List<Key> topologicalOrder()
 	{
-		return path1.stream().distinct().filter(path2::contains).collect(Collectors.toList());
+		return freeze().topologicalOrder();
 	}
+	
+	/**
+	 * @return the keys in topological order (see topologicalOrder()), each followed by a space
+	 */
+	public String topologicalSort() 
+	{ 
+		return freeze().topologicalSort();
+	} 
 
+	/**
+	 * Marks a node and every node that can reach it.
+	 * 
+	 * @param node Starting node
+	 * @return set of the ids of all ancestors of the node, including the node itself
+	 */
+	private BitSet markAncestors(final Node node)
+	{
+		final BitSet marked = new BitSet();
+		final Deque<Node> queue = new ArrayDeque<>();
+		marked.set(node.id);
+		queue.add(node);
+		while(!queue.isEmpty())
+		{
+			for(final Key key : queue.poll().ancestors)
+			{
+				final Node ancestor = get(key);
+				if(mark(marked, ancestor))
+					queue.add(ancestor);
+			}
+		}
+		return marked;
+	}
+	
 	/**
 	 * The lowest common ancestor of 2 nodes is that node which is furthest from any root that the source nodes' longest paths from that root have in common.
+	 * A node counts as its own ancestor. The ancestors of srcNode2 are marked, then a breadth first search up from 
+	 * srcNode1 looks for marked nodes and keeps the one with the greatest depth label, so no paths are ever built.
+	 * The search does not go past a common ancestor, as all of its own ancestors are shallower than it.
+	 * Ties are broken in favour of the ancestor closest to srcNode1.
 	 * 
-	 * @param node1
-	 * @param node2
-	 * @return
+	 * @param srcNode1
+	 * @param srcNode2
+	 * @return key of the lowest common ancestor, or null if either key is invalid or the nodes share no ancestor
 	 */
 	public Key LCA(Key srcNode1, Key srcNode2)
 	{
+		final Node node1 = get(srcNode1);
+		final Node node2 = get(srcNode2);
 		//test if provided source nodes are valid
-		if(isValidNode(srcNode1) && isValidNode(srcNode2))
+		if(node1 == null || node2 == null)
+			return null;
+		
+		final BitSet ancestors2 = markAncestors(node2);
+		final BitSet visited = new BitSet();
+		final Deque<Node> queue = new ArrayDeque<>();
+		Node deepest = null;
+		visited.set(node1.id);
+		queue.add(node1);
+		while(!queue.isEmpty())
 		{
-			//get all paths through the DAG starting at srcNode1 and srcNode2 respectively
-			final List<List<Key>> pathList1 = getPaths(srcNode1);
-			final List<List<Key>> pathList2 = getPaths(srcNode2);
-			
-			if(pathList1 == null || pathList2 == null)
-				return null;
-			
-			//Compute all possible N*M intersections, where N = pathList1.size() and M = pathList2.size()
-			//Pick the longest list (i.e. the deepest)
-			final Optional<List<Key>> shortestFromSrc = pathList1.stream().distinct().
-                    flatMap(path1 -> pathList2.stream().map(path2 -> intersection(path1, path2))).
-                    max((Comparator.comparingInt(List::size)));
-			//Paths are built bottom-up (from node up to ancestors), so the dirst element in the list will be the LCA.
-			//Some sanity null and empty list checks
-			return shortestFromSrc.map(path -> path.isEmpty()?null:path.get(0)).orElse(null);
-		} 
-		else return null;
+			final Node node = queue.poll();
+			if(ancestors2.get(node.id))
+			{
+				if(deepest == null || node.depth > deepest.depth)
+					deepest = node;
+				continue;
+			}
+			for(final Key key : node.ancestors)
+			{
+				final Node ancestor = get(key);
+				if(mark(visited, ancestor))
+					queue.add(ancestor);
+			}
+		}
+		return deepest == null ? null : deepest.key();
 	}
 	
-	
-	
 }
\ No newline at end of file
@@ -0,0 +1,248 @@
+package lowestCommonAncestor;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+
+/**
+ * Loads a DirectedAcyclicGraph with int keys from an edge list file.
+ * The file is read through memory mappings of up to CHUNK bytes at a time and parsed byte by byte by a small
+ * state machine, so no line is ever turned into a String. Each line is one record:
+ *
+ *   n <id> [value]    a node; value (an int, the id if left out) is turned into the node's value by a function
+ *   e <src> <dst>     an edge; nodes that were not declared yet are added first, with the value of their id
+ *   # ...             a comment, which may also follow a record
+ *
+ * A node may be declared only once, and only before any edge that uses it, since its value cannot change
+ * once it is in the graph.
+ * Blank lines are ignored and fields are separated by spaces or tabs. Nodes are added as they are read, while
+ * the edges are collected in int arrays and added straight from them with a single addEdges at the end.
+ */
+public final class EdgeListLoader<Value> {
+	private static final long CHUNK = 1 << 30;				// bytes mapped at a time
+	private static final long PROGRESS_INTERVAL = 1 << 24;	// bytes parsed between progress reports
+
+	/**
+	 * Receives progress reports while a file loads, and a last one when the graph is complete.
+	 */
+	public interface Progress {
+		/**
+		 * @param bytes bytes parsed so far
+		 * @param totalBytes size of the file
+		 * @param nodes nodes read so far, including those added for edges
+		 * @param edges edges read so far
+		 * @param nanos time since loading started, so bytes / nanos gives the throughput
+		 */
+		void update(long bytes, long totalBytes, long nodes, long edges, long nanos);
+
+		/**
+		 * Called while the parsed edges are added to the graph, every 65536 edges, once the whole
+		 * file is parsed. Adding the edges usually takes longer than parsing them. The last update comes
+		 * when the graph is complete.
+		 *
+		 * @param added edges added so far
+		 * @param edges edges in the file
+		 * @param nanos time since loading started
+		 */
+		default void inserting(long added, long edges, long nanos)
+		{
+		}
+	}
+
+	private final DirectedAcyclicGraph<Integer, Value> graph = new DirectedAcyclicGraph<>();
+	private final IntFunction<Value> values;
+	private int[] sources = new int[1024];
+	private int[] targets = new int[1024];
+	private int edges;
+
+	//state of the parser, which carries over from one mapped chunk to the next
+	private int type;						// record type of the current line, 0 until it is read
+	private final long[] fields = new long[3];
+	private int count;						// number of fields read on the current line
+	private long number;					// value of the number being read
+	private boolean negative;
+	private boolean inNumber;
+	private boolean digits;					// has the number being read got any digits yet?
+	private boolean comment;				// is the rest of the line a comment?
+	private long line = 1;
+
+	private EdgeListLoader(final IntFunction<Value> values)
+	{
+		this.values = values;
+	}
+
+	/**
+	 * Loads a graph from an edge list file.
+	 *
+	 * @param file the edge list
+	 * @param values turns the value field of each node into its value, which must not be null
+	 * @return the graph
+	 * @throws IOException if the file cannot be read, has a malformed line, or its edges contain a cycle
+	 */
+	public static <Value> DirectedAcyclicGraph<Integer, Value> load(final Path file, final IntFunction<Value> values) throws IOException
+	{
+		return load(file, values, null);
+	}
+
+	/**
+	 * Loads a graph from an edge list file, reporting progress as it goes.
+	 *
+	 * @param file the edge list
+	 * @param values turns the value field of each node into its value, which must not be null
+	 * @param progress told how far loading has got about every 16MB, and once more when the graph is complete; may be null
+	 * @return the graph
+	 * @throws IOException if the file cannot be read, has a malformed line, or its edges contain a cycle
+	 */
+	public static <Value> DirectedAcyclicGraph<Integer, Value> load(final Path file, final IntFunction<Value> values, final Progress progress) throws IOException
+	{
+		return new EdgeListLoader<>(values).read(file, progress);
+	}
+
+	private DirectedAcyclicGraph<Integer, Value> read(final Path file, final Progress progress) throws IOException
+	{
+		final long start = System.nanoTime();
+		final long size;
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			size = channel.size();
+			long nextReport = PROGRESS_INTERVAL;
+			for(long position = 0; position < size; position += CHUNK)
+			{
+				final MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(CHUNK, size - position));
+				while(chunk.hasRemaining())
+				{
+					parse(chunk.get());
+					if(progress != null && position + chunk.position() == nextReport)
+					{
+						progress.update(nextReport, size, graph.N(), edges, System.nanoTime() - start);
+						nextReport += PROGRESS_INTERVAL;
+					}
+				}
+			}
+		}
+		parse((byte) '\n'); //the last line need not end with a newline
+
+		final IntConsumer inserting = progress == null ? null : added -> progress.inserting(added, edges, System.nanoTime() - start);
+		if(!graph.addEdges(sources, targets, edges, Integer::valueOf, inserting))
+			throw new IOException(file + ": the edges contain a cycle or a self-loop");
+		if(progress != null)
+			progress.update(size, size, graph.N(), edges, System.nanoTime() - start);
+		return graph;
+	}
+
+	private void parse(final byte b) throws IOException
+	{
+		if(comment)
+		{
+			if(b == '\n')
+				endLine();
+			return;
+		}
+		switch(b)
+		{
+			case '\n':
+				endField();
+				endLine();
+				break;
+			case ' ':
+			case '\t':
+			case '\r':
+				endField();
+				break;
+			case '#':
+				endField();
+				comment = true;
+				break;
+			case '-':
+				if(inNumber || type == 0)
+					throw error("unexpected '-'");
+				inNumber = true;
+				negative = true;
+				break;
+			default:
+				if(b >= '0' && b <= '9')
+				{
+					if(type == 0)
+						throw error("a line must start with n or e");
+					inNumber = true;
+					digits = true;
+					number = number * 10 + (b - '0');
+					if(number > Integer.MAX_VALUE + 1L)
+						throw error("number out of range");
+				}
+				else if(type == 0 && (b == 'n' || b == 'e'))
+					type = b;
+				else
+					throw error("unexpected character '" + (char) b + "'");
+		}
+	}
+
+	private void endField() throws IOException
+	{
+		if(!inNumber)
+			return;
+		if(!digits)
+			throw error("'-' without a number");
+		final long value = negative ? -number : number;
+		if(value > Integer.MAX_VALUE)
+			throw error("number out of range");
+		if(count == fields.length)
+			throw error("too many fields");
+		fields[count++] = value;
+		number = 0;
+		negative = false;
+		inNumber = false;
+		digits = false;
+	}
+
+	private void endLine() throws IOException
+	{
+		if(type == 'n')
+		{
+			if(count != 1 && count != 2)
+				throw error("a node needs an id and at most one value");
+			final int id = (int) fields[0];
+			if(graph.isValidNode(id))
+				throw error("node " + id + " was already declared or used by an edge");
+			graph.addNode(id, values.apply(count == 2 ? (int) fields[1] : id));
+		}
+		else if(type == 'e')
+		{
+			if(count != 2)
+				throw error("an edge needs a source and a destination");
+			addEdge((int) fields[0], (int) fields[1]);
+		}
+		else if(count != 0)
+			throw error("a line must start with n or e");
+		type = 0;
+		count = 0;
+		comment = false;
+		line++;
+	}
+
+	private void addEdge(final int source, final int target)
+	{
+		if(!graph.isValidNode(source))
+			graph.addNode(source, values.apply(source));
+		if(!graph.isValidNode(target))
+			graph.addNode(target, values.apply(target));
+		if(edges == sources.length)
+		{
+			sources = Arrays.copyOf(sources, edges * 2);
+			targets = Arrays.copyOf(targets, edges * 2);
+		}
+		sources[edges] = source;
+		targets[edges] = target;
+		edges++;
+	}
+
+	private IOException error(final String message)
+	{
+		return new IOException("line " + line + ": " + message);
+	}
+}
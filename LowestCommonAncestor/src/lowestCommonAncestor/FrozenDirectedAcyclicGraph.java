@@ -0,0 +1,249 @@
+package lowestCommonAncestor;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of a DirectedAcyclicGraph, made by DirectedAcyclicGraph.freeze().
+ * Nodes are numbered 0..N-1 in insertion order and edges are kept in compressed sparse row form,
+ * in both directions: the destinations of node i are targets[offsets[i]] .. targets[offsets[i+1] - 1],
+ * and its ancestors are sources[reverseOffsets[i]] .. sources[reverseOffsets[i+1] - 1], both in the
+ * order the edges were added. Each key is stored once, so a query only looks up its keys in the
+ * dictionary and then walks flat int arrays.
+ * Since nothing changes after construction, any number of threads can query a snapshot at once.
+ */
+public final class FrozenDirectedAcyclicGraph<Key extends Comparable<Key>, Value> {
+	private final Object[] keys;				// key of each node, by id
+	private final Object[] vals;				// value of each node, by id
+	private final Map<Key, Integer> ids;		// id of each key
+	//the arrays are package-private so that MappedDirectedAcyclicGraph.save() can write them out, never to change them
+	final int[] offsets;
+	final int[] targets;
+	final int[] reverseOffsets;
+	final int[] sources;
+	final int[] depth;							// length of the longest path from any root to each node
+	final int[] order;							// ids in topological order
+	private final List<Key> orderKeys;			// read-only view of order as keys
+	private volatile ReachabilityIndex reachability;	// built on the first reachability query
+	private final ThreadLocal<AncestorSearch> searches;	// scratch space for LCA, one per thread
+
+	FrozenDirectedAcyclicGraph(final Object[] keys, final Object[] vals, final Map<Key, Integer> ids,
+			final int[] offsets, final int[] targets, final int[] reverseOffsets, final int[] sources, final int[] depth)
+	{
+		this.keys = keys;
+		this.vals = vals;
+		this.ids = ids;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.reverseOffsets = reverseOffsets;
+		this.sources = sources;
+		this.depth = depth;
+		this.order = topologicalOrder(offsets, targets);
+		this.orderKeys = new AbstractList<Key>() {
+			@Override
+			public Key get(final int index)
+			{
+				return key(order[index]);
+			}
+
+			@Override
+			public int size()
+			{
+				return order.length;
+			}
+		};
+		this.searches = ThreadLocal.withInitial(this::newSearch);
+	}
+
+	/**
+	 * Topological order of a DAG in compressed sparse row form: the reverse of the post-order of a depth first
+	 * search that starts from every unvisited node by id and follows edges in order, found with an explicit
+	 * stack so that long chains cannot overflow the call stack.
+	 *
+	 * @return the node ids in topological order
+	 */
+	static int[] topologicalOrder(final int[] offsets, final int[] targets)
+	{
+		final int n = offsets.length - 1;
+		final int[] order = new int[n];
+		final boolean[] visited = new boolean[n];
+		final int[] stack = new int[n];
+		final int[] next = new int[n];		// next edge to follow from each node on the stack
+		int position = n;
+		for(int start = 0; start < n; start++)
+		{
+			if(visited[start])
+				continue;
+			int top = 0;
+			stack[0] = start;
+			next[start] = offsets[start];
+			visited[start] = true;
+			while(top >= 0)
+			{
+				final int node = stack[top];
+				if(next[node] < offsets[node + 1])
+				{
+					final int child = targets[next[node]++];
+					if(!visited[child])
+					{
+						visited[child] = true;
+						next[child] = offsets[child];
+						stack[++top] = child;
+					}
+				}
+				else
+				{
+					order[--position] = node;
+					top--;
+				}
+			}
+		}
+		return order;
+	}
+
+	//Returns amount of nodes in whole graph
+	public int N()
+	{
+		return keys.length;
+	}
+
+	//Returns amount of edges in whole graph
+	public int E()
+	{
+		return targets.length;
+	}
+
+	/**
+	 * @param key
+	 * @return id of the node with that key, or -1 if there is none
+	 */
+	int id(final Key key)
+	{
+		if(key == null)
+			return -1;
+		final Integer id = ids.get(key);
+		return id == null ? -1 : id;
+	}
+
+	@SuppressWarnings("unchecked")
+	Key key(final int id)
+	{
+		return (Key) keys[id];
+	}
+
+	// scratch space for LCA searches over this graph, for a thread of its own
+	private AncestorSearch newSearch()
+	{
+		return new AncestorSearch(reverseOffsets, sources, depth);
+	}
+
+	// the calling thread's scratch space for LCA searches over this graph
+	AncestorSearch search()
+	{
+		return searches.get();
+	}
+
+	public boolean isValidNode(final Key key)
+	{
+		return id(key) != -1;
+	}
+
+	/**
+	 * @param key
+	 * @return the value of the node with that key, or null if there is none
+	 */
+	@SuppressWarnings("unchecked")
+	public Value val(final Key key)
+	{
+		final int id = id(key);
+		return id == -1 ? null : (Value) vals[id];
+	}
+
+	public int indegree(final Key key)
+	{
+		final int id = id(key);
+		return id == -1 ? -1 : reverseOffsets[id + 1] - reverseOffsets[id];
+	}
+
+	public int outdegree(final Key key)
+	{
+		final int id = id(key);
+		return id == -1 ? -1 : offsets[id + 1] - offsets[id];
+	}
+
+	/**
+	 * @param key
+	 * @return the number of edges on the longest path from any root to the node, or -1 if there is no node with that key
+	 */
+	public int depth(final Key key)
+	{
+		final int id = id(key);
+		return id == -1 ? -1 : depth[id];
+	}
+
+	/**
+	 * Is there a path from v to w? A node can always reach itself.
+	 * The reachability index is built over the snapshot's own arrays on the first query.
+	 *
+	 * @param v (key of source node)
+	 * @param w (key of destination node)
+	 * @return true if both nodes exist and w can be reached from v
+	 */
+	public boolean isReachable(final Key v, final Key w)
+	{
+		final int source = id(v);
+		final int dest = id(w);
+		if(source == -1 || dest == -1)
+			return false;
+		ReachabilityIndex index = reachability;
+		if(index == null)
+			reachability = index = new ReachabilityIndex(offsets, targets);
+		return index.reaches(source, dest);
+	}
+
+	/**
+	 * Is ancestor an ancestor of node? As in LCA, a node counts as its own ancestor.
+	 */
+	public boolean isAncestor(final Key ancestor, final Key node)
+	{
+		return isReachable(ancestor, node);
+	}
+
+	/**
+	 * @return the keys in the same topological order as DirectedAcyclicGraph.topologicalSort(), as a read-only list
+	 */
+	public List<Key> topologicalOrder()
+	{
+		return orderKeys;
+	}
+
+	/**
+	 * @return the keys in topological order, each followed by a space, as DirectedAcyclicGraph.topologicalSort() gives them
+	 */
+	public String topologicalSort()
+	{
+		final StringBuilder result = new StringBuilder();
+		for(final int id : order)
+			result.append(keys[id]).append(" ");
+		return result.toString();
+	}
+
+	/**
+	 * Lowest common ancestor of two nodes, the same one DirectedAcyclicGraph.LCA finds.
+	 * Each thread reuses its own scratch space, so a query only touches the ancestors it visits.
+	 *
+	 * @param srcNode1
+	 * @param srcNode2
+	 * @return key of the lowest common ancestor, or null if either key is invalid or the nodes share no ancestor
+	 */
+	public Key LCA(final Key srcNode1, final Key srcNode2)
+	{
+		final int node1 = id(srcNode1);
+		final int node2 = id(srcNode2);
+		if(node1 == -1 || node2 == -1)
+			return null;
+		final int lca = search().lca(node1, node2);
+		return lca == -1 ? null : key(lca);
+	}
+}
@@ -0,0 +1,369 @@
+package lowestCommonAncestor;
+
+import java.util.Arrays;
+
+/**
+ * Binary search tree with primitive int keys.
+ * Behaves like BinarySearchTree&lt;Integer, Value&gt;, but there are no node objects: a node is a slot in
+ * parallel arrays holding its key, children, subtree size and height, so keys are never boxed and a
+ * search walks through a few int arrays. Slots of deleted nodes are kept on a free list, threaded
+ * through the left array, and handed out again by the next put.
+ */
+public class IntBinarySearchTree<Value> {
+	private static final int NIL = -1;		// no node
+	private static final int DELTA = 3;		// in a balanced tree no subtree outweighs its sibling more than DELTA times
+	private static final int GAMMA = 2;		// decides between a single and a double rotation when rebalancing
+
+	private int[] keys;				// sorted by key
+	private Object[] vals;			// associated data
+	private int[] left, right;		// left and right subtrees
+	private int[] size;				// number of nodes in subtree
+	private int[] height;			// number of links from the node to the deepest leaf below it
+	private int root;				// root of BST
+	private int free;				// first slot on the free list
+	private int used;				// number of slots ever handed out
+	private int[] path;				// nodes from the root down to the current position in put and delete
+	private final boolean balanced;	// rebalance on every put and delete?
+
+	/**
+	 * Creates an empty tree that never rebalances, so its shape depends on the insertion order.
+	 */
+	public IntBinarySearchTree()
+	{
+		this(false);
+	}
+
+	/**
+	 * Creates an empty tree, weight-balanced like a balanced BinarySearchTree if asked to.
+	 *
+	 * @param balanced true to rebalance on every put and delete
+	 */
+	public IntBinarySearchTree(boolean balanced)
+	{
+		this.balanced = balanced;
+		final int capacity = 16;
+		keys = new int[capacity];
+		vals = new Object[capacity];
+		left = new int[capacity];
+		right = new int[capacity];
+		size = new int[capacity];
+		height = new int[capacity];
+		path = new int[capacity];
+		root = NIL;
+		free = NIL;
+		used = 0;
+	}
+
+	// is the symbol table empty?
+	public boolean isEmpty()
+	{
+		return size() == 0;
+	}
+
+	// return number of key-value pairs in BST
+	public int size()
+	{
+		return size(root);
+	}
+
+	// return number of key-value pairs in BST rooted at x
+	private int size(int x)
+	{
+		return x == NIL ? 0 : size[x];
+	}
+
+	private int height(int x)
+	{
+		return x == NIL ? -1 : height[x];
+	}
+
+	// recompute the size and height of x from its children
+	private void update(int x)
+	{
+		size[x] = 1 + size(left[x]) + size(right[x]);
+		height[x] = 1 + Math.max(height(left[x]), height(right[x]));
+	}
+
+	private int newNode(int key, Value val)
+	{
+		int x;
+		if (free != NIL)
+		{
+			x = free;
+			free = left[x];
+		}
+		else
+		{
+			if (used == keys.length)
+			{
+				final int capacity = keys.length * 2;
+				keys = Arrays.copyOf(keys, capacity);
+				vals = Arrays.copyOf(vals, capacity);
+				left = Arrays.copyOf(left, capacity);
+				right = Arrays.copyOf(right, capacity);
+				size = Arrays.copyOf(size, capacity);
+				height = Arrays.copyOf(height, capacity);
+			}
+			x = used++;
+		}
+		keys[x] = key;
+		vals[x] = val;
+		left[x] = NIL;
+		right[x] = NIL;
+		size[x] = 1;
+		height[x] = 0;
+		return x;
+	}
+
+	private void freeNode(int x)
+	{
+		vals[x] = null;
+		left[x] = free;
+		free = x;
+	}
+
+	private void push(int depth, int x)
+	{
+		if (depth == path.length)
+			path = Arrays.copyOf(path, path.length * 2);
+		path[depth] = x;
+	}
+
+	/**
+	 *  Does there exist a key-value pair with given key?
+	 *
+	 *  @param key the search key
+	 *  @return true if key is found and false otherwise
+	 */
+	public boolean contains(int key)
+	{
+		return getNode(root, key) != NIL;
+	}
+
+	/**
+	 *  What is the value associated with given key?
+	 *
+	 *  @param key the search key
+	 *  @return value associated with the given key if found, or null if no such key exists.
+	 */
+	@SuppressWarnings("unchecked")
+	public Value get(int key)
+	{
+		final int x = getNode(root, key);
+		return x == NIL ? null : (Value) vals[x];
+	}
+
+	private int getNode(int x, int key)
+	{
+		while (x != NIL && keys[x] != key)
+			x = key < keys[x] ? left[x] : right[x];
+		return x;
+	}
+
+	/**
+	 *  Insert key-value pair into BST.
+	 *  If key already exists, update with new value.
+	 *
+	 *  @param key the key to insert
+	 *  @param val the value associated with key, null deletes the key
+	 */
+	public void put(int key, Value val)
+	{
+		if (val == null)
+		{
+			delete(key);
+			return;
+		}
+		int depth = 0;
+		for (int x = root; x != NIL; depth++)
+		{
+			if (key == keys[x])
+			{
+				vals[x] = val;
+				return;
+			}
+			push(depth, x);
+			x = key < keys[x] ? left[x] : right[x];
+		}
+		root = relink(0, depth, key, newNode(key, val));
+	}
+
+	/**
+	 * Hangs subtree below path[top - 1], on the side where key belongs, then walks back up
+	 * the path as far as path[base] updating the subtree sizes and heights and rebalancing.
+	 *
+	 * @return the new root of the path from path[base] down
+	 */
+	private int relink(int base, int top, int key, int subtree)
+	{
+		for (int i = top - 1; i >= base; i--)
+		{
+			final int parent = path[i];
+			if (key < keys[parent]) left[parent] = subtree;
+			else                    right[parent] = subtree;
+			update(parent);
+			subtree = balance(parent);
+		}
+		return subtree;
+	}
+
+	/**
+	 * Deletes a key from a tree (if the key is in the tree).
+	 * If the node to be deleted has two child nodes, then it is replaced with its predecessor.
+	 *
+	 * @param key the key to delete
+	 */
+	public void delete(int key)
+	{
+		int depth = 0;
+		int x = root;
+		while (x != NIL && keys[x] != key)
+		{
+			push(depth++, x);
+			x = key < keys[x] ? left[x] : right[x];
+		}
+		if (x == NIL) return;
+
+		int replacement;
+		if (right[x] == NIL) replacement = left[x];
+		else if (left[x] == NIL) replacement = right[x];
+		else
+		{
+			//take out the predecessor, using the path above the deleted node's own entries
+			int top = depth;
+			int max = left[x];
+			while (right[max] != NIL)
+			{
+				push(top++, max);
+				max = right[max];
+			}
+			left[max] = relink(depth, top, keys[max], left[max]);
+			right[max] = right[x];
+			update(max);
+			replacement = balance(max);
+		}
+		freeNode(x);
+		root = relink(0, depth, key, replacement);
+	}
+
+	// is subtree a light enough compared to its sibling subtree b?
+	private boolean isBalanced(int a, int b)
+	{
+		return DELTA * (size(a) + 1) >= size(b) + 1;
+	}
+
+	// can the heavy subtree be fixed by a single rotation, given its inner child a and outer child b?
+	private boolean isSingle(int a, int b)
+	{
+		return size(a) + 1 < GAMMA * (size(b) + 1);
+	}
+
+	// restores the weight balance of x after a single put or delete below it, if the tree is balanced
+	private int balance(int x)
+	{
+		if (!balanced)
+			return x;
+		if (!isBalanced(left[x], right[x]))
+		{
+			if (!isSingle(left[right[x]], right[right[x]]))
+				right[x] = rotateRight(right[x]);
+			x = rotateLeft(x);
+		}
+		else if (!isBalanced(right[x], left[x]))
+		{
+			if (!isSingle(right[left[x]], left[left[x]]))
+				left[x] = rotateLeft(left[x]);
+			x = rotateRight(x);
+		}
+		return x;
+	}
+
+	private int rotateLeft(int h)
+	{
+		final int x = right[h];
+		right[h] = left[x];
+		left[x] = h;
+		update(h);
+		update(x);
+		return x;
+	}
+
+	private int rotateRight(int h)
+	{
+		final int x = left[h];
+		left[h] = right[x];
+		right[x] = h;
+		update(h);
+		update(x);
+		return x;
+	}
+
+	/**
+	 * Tree height, Theta(1).
+	 *
+	 * @return the number of links from the root to the deepest leaf, -1 for an empty tree.
+	 */
+	public int height()
+	{
+		return height(root);
+	}
+
+	/**
+	 * Median key, the element at position (N+1)/2 of the sorted keys. Theta(h).
+	 *
+	 * @return the median key, or null if the tree is empty.
+	 */
+	public Integer median()
+	{
+		int positionWanted = (size() + 1) / 2;
+		int x = root;
+		while (x != NIL)
+		{
+			final int leftCount = size(left[x]);
+			if (leftCount + 1 == positionWanted)
+				return keys[x];
+			else if (leftCount >= positionWanted)
+				x = left[x];
+			else
+			{
+				positionWanted -= leftCount + 1;
+				x = right[x];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Lowest common ancestor of two keys, as defined by BinarySearchTree.LCA: the keys themselves are not
+	 * part of their paths, so if one key is an ancestor of the other the answer is its parent. Theta(h).
+	 *
+	 * @param key1 (key of first descendant)
+	 * @param key2 (key of second descendant)
+	 * @return LCA (key of lowest common ancestor of both descendants), or null if there is none
+	 */
+	public Integer LCA(int key1, int key2)
+	{
+		int parent = NIL;
+		int x = root;
+		while (x != NIL)
+		{
+			if (key1 < keys[x] && key2 < keys[x])
+			{
+				parent = x;
+				x = left[x];
+			}
+			else if (key1 > keys[x] && key2 > keys[x])
+			{
+				parent = x;
+				x = right[x];
+			}
+			else
+				break; //the paths to key1 and key2 split here
+		}
+		if (x == NIL || getNode(x, key1) == NIL || getNode(x, key2) == NIL)
+			return null;
+		if (key1 == keys[x] || key2 == keys[x])
+			return parent == NIL ? null : keys[parent];
+		return keys[x];
+	}
+}
@@ -0,0 +1,99 @@
+package lowestCommonAncestor;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Answers batches of LCA queries in parallel over a frozen DAG.
+ * A batch is split in halves on a ForkJoinPool until the pieces are small, and each worker thread answers
+ * its pieces with scratch space of its own that it keeps for every batch (see FrozenDirectedAcyclicGraph.LCA).
+ * The graph never changes, so the workers share it without any locking.
+ */
+public final class LCAQueryEngine<Key extends Comparable<Key>, Value> {
+	private static final int BATCH = 256;	// queries answered by one task without splitting further
+
+	private final FrozenDirectedAcyclicGraph<Key, Value> graph;
+	private final ForkJoinPool pool;
+
+	/**
+	 * Creates an engine that runs on the common ForkJoinPool.
+	 *
+	 * @param graph the graph to answer queries on, e.g. from DirectedAcyclicGraph.freeze()
+	 */
+	public LCAQueryEngine(final FrozenDirectedAcyclicGraph<Key, Value> graph)
+	{
+		this(graph, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param graph the graph to answer queries on, e.g. from DirectedAcyclicGraph.freeze()
+	 * @param pool the threads to answer queries with
+	 */
+	public LCAQueryEngine(final FrozenDirectedAcyclicGraph<Key, Value> graph, final ForkJoinPool pool)
+	{
+		this.graph = graph;
+		this.pool = pool;
+	}
+
+	/**
+	 * Answers a batch of LCA queries. Each answer is the same as graph.LCA(first, second) would give.
+	 *
+	 * @param queries pairs of keys
+	 * @return the lowest common ancestor of each pair, in query order (null where LCA gives null)
+	 */
+	public List<Key> LCA(final Collection<Pair<Key, Key>> queries)
+	{
+		final Object[] pairs = queries.toArray();
+		final Object[] answers = new Object[pairs.length];
+		pool.invoke(new Queries(pairs, answers, 0, pairs.length));
+		@SuppressWarnings("unchecked")
+		final List<Key> result = (List<Key>) (List<?>) Arrays.asList(answers);
+		return result;
+	}
+
+	/**
+	 * Answers the queries from lo up to (not including) hi, writing each answer at the query's own position.
+	 */
+	private final class Queries extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Object[] pairs;
+		private final Object[] answers;
+		private final int lo;
+		private final int hi;
+
+		private Queries(final Object[] pairs, final Object[] answers, final int lo, final int hi)
+		{
+			this.pairs = pairs;
+			this.answers = answers;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(hi - lo > BATCH)
+			{
+				final int mid = (lo + hi) >>> 1;
+				invokeAll(new Queries(pairs, answers, lo, mid), new Queries(pairs, answers, mid, hi));
+				return;
+			}
+			final AncestorSearch search = graph.search();
+			for(int i = lo; i < hi; i++)
+			{
+				@SuppressWarnings("unchecked")
+				final Pair<Key, Key> query = (Pair<Key, Key>) pairs[i];
+				final int node1 = graph.id(query.first());
+				final int node2 = graph.id(query.second());
+				if(node1 == -1 || node2 == -1)
+					continue;
+				final int lca = search.lca(node1, node2);
+				if(lca != -1)
+					answers[i] = graph.key(lca);
+			}
+		}
+	}
+}
@@ -0,0 +1,401 @@
+package lowestCommonAncestor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Read-only DirectedAcyclicGraph with int keys, served straight from a memory-mapped snapshot file.
+ * save() writes the arrays of a FrozenDirectedAcyclicGraph to a file and open() maps that file and reads
+ * them in place, so reopening a graph costs nothing but the mapping and a look at the header: there is no
+ * parsing and no copying, and pages are only read from disk when a query first touches them. Checking the
+ * whole file against its checksum is left to open(file, true).
+ *
+ * The file is a sequence of little-endian ints:
+ *
+ *   MAGIC VERSION n e CHECKSUM          header; CHECKSUM is the CRC32 of every byte after it
+ *   keys[n]                             key of each node, by id
+ *   sortedKeys[n] sortedIds[n]          the keys in increasing order and their ids, for binary search
+ *   depth[n] order[n]                   depth of each node, and the ids in topological order
+ *   offsets[n+1] targets[e]             destinations of each node
+ *   reverseOffsets[n+1] sources[e]      ancestors of each node
+ *
+ * save() writes a temporary file next to the target and moves it into place once it is complete, so the
+ * target always holds either the old snapshot or the new one, and a graph still mapped from the old file
+ * keeps working. Node values are not saved, since they can be any object. The whole file is one mapping, so it must stay
+ * under 2GB, which is about 268 million nodes and edges together.
+ */
+public final class MappedDirectedAcyclicGraph {
+	private static final int MAGIC = 0x44414731;		// "DAG1"
+	private static final int VERSION = 1;
+	private static final int HEADER = 5;				// ints before the first array
+
+	private final int n;
+	private final int e;
+	private final IntBuffer keys;
+	private final IntBuffer sortedKeys;
+	private final IntBuffer sortedIds;
+	private final IntBuffer depth;
+	private final IntBuffer order;
+	private final IntBuffer offsets;
+	private final IntBuffer reverseOffsets;
+	private final List<Integer> orderKeys;				// read-only view of order as keys
+	private final ThreadLocal<Search> searches;			// scratch space for LCA, one per thread
+
+	private MappedDirectedAcyclicGraph(final IntBuffer file, final int n, final int e)
+	{
+		this.n = n;
+		this.e = e;
+		this.keys = section(file, HEADER, n);
+		this.sortedKeys = section(file, HEADER + n, n);
+		this.sortedIds = section(file, HEADER + 2 * n, n);
+		this.depth = section(file, HEADER + 3 * n, n);
+		this.order = section(file, HEADER + 4 * n, n);
+		this.offsets = section(file, HEADER + 5 * n, n + 1);
+		final IntBuffer targets = section(file, HEADER + 6 * n + 1, e);
+		this.reverseOffsets = section(file, HEADER + 6 * n + 1 + e, n + 1);
+		final IntBuffer sources = section(file, HEADER + 7 * n + 2 + e, e);
+		this.orderKeys = new AbstractList<Integer>() {
+			@Override
+			public Integer get(final int index)
+			{
+				if(index < 0 || index >= n)
+					throw new IndexOutOfBoundsException("index " + index + ", size " + n);
+				return keys.get(order.get(index));
+			}
+
+			@Override
+			public int size()
+			{
+				return n;
+			}
+		};
+		this.searches = ThreadLocal.withInitial(() -> new Search(reverseOffsets, sources, depth));
+	}
+
+	/**
+	 * AncestorSearch, reading the reverse edges and depths through the mapped views instead of int arrays.
+	 * It is kept apart so that the searches over in-heap arrays never pay for IntBuffer calls. Not thread-safe:
+	 * each thread needs its own.
+	 */
+	private static final class Search {
+		private final IntBuffer offsets;
+		private final IntBuffer sources;
+		private final IntBuffer depth;
+		private final int[] marked;			// == stamp for the ancestors of the second node
+		private final int[] visited;		// == stamp for the nodes reached from the first node
+		private final int[] queue;
+		private int stamp;
+
+		private Search(final IntBuffer offsets, final IntBuffer sources, final IntBuffer depth)
+		{
+			this.offsets = offsets;
+			this.sources = sources;
+			this.depth = depth;
+			final int n = offsets.limit() - 1;
+			this.marked = new int[n];
+			this.visited = new int[n];
+			this.queue = new int[n];
+		}
+
+		/**
+		 * @return id of the lowest common ancestor of two nodes, as AncestorSearch.lca finds it, or -1 if there is none
+		 */
+		private int lca(final int node1, final int node2)
+		{
+			if(++stamp == Integer.MAX_VALUE)
+			{
+				Arrays.fill(marked, 0);
+				Arrays.fill(visited, 0);
+				stamp = 1;
+			}
+
+			int head = 0;
+			int tail = 0;
+			marked[node2] = stamp;
+			queue[tail++] = node2;
+			while(head < tail)
+			{
+				final int node = queue[head++];
+				final int end = offsets.get(node + 1);
+				for(int e = offsets.get(node); e < end; e++)
+				{
+					final int ancestor = sources.get(e);
+					if(marked[ancestor] != stamp)
+					{
+						marked[ancestor] = stamp;
+						queue[tail++] = ancestor;
+					}
+				}
+			}
+
+			head = 0;
+			tail = 0;
+			int deepest = -1;
+			visited[node1] = stamp;
+			queue[tail++] = node1;
+			while(head < tail)
+			{
+				final int node = queue[head++];
+				if(marked[node] == stamp)
+				{
+					if(deepest == -1 || depth.get(node) > depth.get(deepest))
+						deepest = node;
+					continue;
+				}
+				final int end = offsets.get(node + 1);
+				for(int e = offsets.get(node); e < end; e++)
+				{
+					final int ancestor = sources.get(e);
+					if(visited[ancestor] != stamp)
+					{
+						visited[ancestor] = stamp;
+						queue[tail++] = ancestor;
+					}
+				}
+			}
+			return deepest;
+		}
+	}
+
+	// view of length ints of the file, starting at int position start
+	private static IntBuffer section(final IntBuffer file, final int start, final int length)
+	{
+		final IntBuffer view = file.duplicate();
+		view.position(start);
+		view.limit(start + length);
+		return view.slice();
+	}
+
+	// number of ints in a file holding n nodes and e edges
+	private static long size(final long n, final long e)
+	{
+		return HEADER + 7 * n + 2 + 2 * e;
+	}
+
+	/**
+	 * Writes a snapshot of a graph to a file, replacing anything the file held before.
+	 * The snapshot is written to a temporary file in the same directory and forced to disk with its magic
+	 * number written last, then moved over the target in one step.
+	 *
+	 * @param graph the graph to save; its values are not saved
+	 * @param file where to write the snapshot
+	 * @throws IOException if the file cannot be written, or the snapshot would not fit in 2GB
+	 */
+	public static void save(final DirectedAcyclicGraph<Integer, ?> graph, final Path file) throws IOException
+	{
+		final FrozenDirectedAcyclicGraph<Integer, ?> frozen = graph.freeze();
+		final int n = frozen.N();
+		final int e = frozen.E();
+		final long bytes = size(n, e) * Integer.BYTES;
+		if(bytes > Integer.MAX_VALUE)
+			throw new IOException(file + ": a snapshot of " + n + " nodes and " + e + " edges would not fit in 2GB");
+
+		final int[] keys = new int[n];
+		final long[] sorted = new long[n];		// key in the high half, id in the low half, so sorting by key keeps the id
+		for(int id = 0; id < n; id++)
+		{
+			keys[id] = frozen.key(id);
+			sorted[id] = (long) keys[id] << 32 | id;
+		}
+		Arrays.sort(sorted);
+		final int[] sortedKeys = new int[n];
+		final int[] sortedIds = new int[n];
+		for(int i = 0; i < n; i++)
+		{
+			sortedKeys[i] = (int) (sorted[i] >> 32);
+			sortedIds[i] = (int) sorted[i];
+		}
+
+		final Path absolute = file.toAbsolutePath();
+		final Path temporary = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+		try
+		{
+			try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.READ, StandardOpenOption.WRITE))
+			{
+				final MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+				mapped.order(ByteOrder.LITTLE_ENDIAN);
+				final IntBuffer out = mapped.asIntBuffer();
+				out.put(0).put(VERSION).put(n).put(e).put(0);
+				out.put(keys).put(sortedKeys).put(sortedIds).put(frozen.depth).put(frozen.order);
+				out.put(frozen.offsets).put(frozen.targets).put(frozen.reverseOffsets).put(frozen.sources);
+				out.put(4, checksum(mapped));
+				mapped.force();
+				out.put(0, MAGIC);
+				mapped.force();
+			}
+			Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		finally
+		{
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	// CRC32 of everything after the header
+	private static int checksum(final ByteBuffer mapped)
+	{
+		final ByteBuffer body = mapped.duplicate();
+		body.position(HEADER * Integer.BYTES);
+		final CRC32 crc = new CRC32();
+		crc.update(body);
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Maps a file written by save(), checking only its header and size. The file must not change while
+	 * the graph is in use; save() replaces it with a new file instead of changing it.
+	 *
+	 * @param file the snapshot
+	 * @return a read-only graph over the mapped file
+	 * @throws IOException if the file cannot be read, is not a snapshot of this version, or is truncated
+	 */
+	public static MappedDirectedAcyclicGraph open(final Path file) throws IOException
+	{
+		return open(file, false);
+	}
+
+	/**
+	 * Maps a file written by save().
+	 *
+	 * @param file the snapshot
+	 * @param verify whether to check every byte against the checksum first, which reads the whole file
+	 * @return a read-only graph over the mapped file
+	 * @throws IOException if the file cannot be read, is not a snapshot of this version, is truncated, or fails the checksum
+	 */
+	public static MappedDirectedAcyclicGraph open(final Path file, final boolean verify) throws IOException
+	{
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			final long bytes = channel.size();
+			if(bytes > Integer.MAX_VALUE)
+				throw new IOException(file + ": larger than 2GB, so not a snapshot");
+			if(bytes < HEADER * Integer.BYTES)
+				throw new IOException(file + ": too short for a snapshot header");
+			final ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, bytes).order(ByteOrder.LITTLE_ENDIAN);
+			final IntBuffer in = mapped.asIntBuffer();
+			if(in.get(0) != MAGIC)
+				throw new IOException(file + ": not a DAG snapshot");
+			if(in.get(1) != VERSION)
+				throw new IOException(file + ": snapshot version " + in.get(1) + ", expected " + VERSION);
+			final int n = in.get(2);
+			final int e = in.get(3);
+			if(n < 0 || e < 0 || size(n, e) * Integer.BYTES != bytes)
+				throw new IOException(file + ": " + bytes + " bytes do not match " + n + " nodes and " + e + " edges");
+			if(verify && in.get(4) != checksum(mapped))
+				throw new IOException(file + ": checksum does not match, the snapshot is corrupt");
+			return new MappedDirectedAcyclicGraph(in, n, e);
+		}
+	}
+
+	//Returns amount of nodes in whole graph
+	public int N()
+	{
+		return n;
+	}
+
+	//Returns amount of edges in whole graph
+	public int E()
+	{
+		return e;
+	}
+
+	/**
+	 * Binary search of the sorted keys.
+	 *
+	 * @param key
+	 * @return id of the node with that key, or -1 if there is none
+	 */
+	private int id(final int key)
+	{
+		int lo = 0;
+		int hi = n - 1;
+		while(lo <= hi)
+		{
+			final int mid = (lo + hi) >>> 1;
+			final int cmp = Integer.compare(key, sortedKeys.get(mid));
+			if(cmp < 0)
+				hi = mid - 1;
+			else if(cmp > 0)
+				lo = mid + 1;
+			else
+				return sortedIds.get(mid);
+		}
+		return -1;
+	}
+
+	public boolean isValidNode(final int key)
+	{
+		return id(key) != -1;
+	}
+
+	public int indegree(final int key)
+	{
+		final int id = id(key);
+		return id == -1 ? -1 : reverseOffsets.get(id + 1) - reverseOffsets.get(id);
+	}
+
+	public int outdegree(final int key)
+	{
+		final int id = id(key);
+		return id == -1 ? -1 : offsets.get(id + 1) - offsets.get(id);
+	}
+
+	/**
+	 * @param key
+	 * @return the number of edges on the longest path from any root to the node, or -1 if there is no node with that key
+	 */
+	public int depth(final int key)
+	{
+		final int id = id(key);
+		return id == -1 ? -1 : depth.get(id);
+	}
+
+	/**
+	 * @return the keys in the order DirectedAcyclicGraph.topologicalSort() gave them when the graph was saved, as a read-only list
+	 */
+	public List<Integer> topologicalOrder()
+	{
+		return orderKeys;
+	}
+
+	/**
+	 * @return the keys in topological order, each followed by a space, as DirectedAcyclicGraph.topologicalSort() gives them
+	 */
+	public String topologicalSort()
+	{
+		final StringBuilder result = new StringBuilder();
+		for(int i = 0; i < n; i++)
+			result.append(keys.get(order.get(i))).append(" ");
+		return result.toString();
+	}
+
+	/**
+	 * Lowest common ancestor of two nodes, the same one DirectedAcyclicGraph.LCA finds.
+	 * The search reads the mapped arrays in place, with scratch space of its own for each thread.
+	 *
+	 * @param srcNode1
+	 * @param srcNode2
+	 * @return key of the lowest common ancestor, or null if either key is invalid or the nodes share no ancestor
+	 */
+	public Integer LCA(final int srcNode1, final int srcNode2)
+	{
+		final int node1 = id(srcNode1);
+		final int node2 = id(srcNode2);
+		if(node1 == -1 || node2 == -1)
+			return null;
+		final int lca = searches.get().lca(node1, node2);
+		return lca == -1 ? null : keys.get(lca);
+	}
+}
@@ -0,0 +1,54 @@
+package lowestCommonAncestor;
+
+import java.util.Objects;
+
+/**
+ * Immutable pair of two values, e.g. the two keys of an LCA query.
+ */
+public final class Pair<A, B> {
+	private final A first;
+	private final B second;
+
+	public Pair(A first, B second) {
+		this.first = first;
+		this.second = second;
+	}
+
+	public static <A, B> Pair<A, B> of(A first, B second)
+	{
+		return new Pair<>(first, second);
+	}
+
+	public A first()
+	{
+		return first;
+	}
+
+	public B second()
+	{
+		return second;
+	}
+
+	@Override
+	public boolean equals(Object other)
+	{
+		if(this == other)
+			return true;
+		if(!(other instanceof Pair))
+			return false;
+		final Pair<?, ?> pair = (Pair<?, ?>) other;
+		return Objects.equals(first, pair.first) && Objects.equals(second, pair.second);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return 31 * Objects.hashCode(first) + Objects.hashCode(second);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "(" + first + "," + second + ")";
+	}
+}
@@ -0,0 +1,187 @@
+package lowestCommonAncestor;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.Random;
+
+/**
+ * Reachability index over a snapshot of a DAG whose nodes are numbered 0..n-1 and whose edges
+ * are given in compressed sparse row form: the destinations of node i are
+ * targets[offsets[i]] .. targets[offsets[i+1] - 1].
+ *
+ * Based on GRAIL interval labelling (Yildirim, Chaoji and Zaki, 2010). Each labelling is a post-order
+ * numbering from a randomised depth first search, and every node gets the interval
+ * [lowest number among its descendants, its own number]. If u reaches v then v's interval lies inside
+ * u's in every labelling, so one labelling that fails this proves v is not reachable.
+ * The first search also keeps pre/post numbers of its spanning forest: if v is in u's subtree of
+ * that forest then u certainly reaches v. Only queries that neither test settles fall back to a
+ * depth first search, and that search is pruned by the same intervals.
+ */
+final class ReachabilityIndex {
+	private static final int LABELLINGS = 2;	// number of GRAIL labellings
+	private static final long SEED = 42;		// fixed so the index is deterministic
+
+	private final int[] offsets;
+	private final int[] targets;
+	private final int[][] low;					// lowest post-order number of any descendant, per labelling
+	private final int[][] rank;					// post-order number, per labelling
+	private final int[] treePre;				// pre-order number in the first labelling's spanning forest
+	private final int[] treePost;				// post-order number in the first labelling's spanning forest
+
+	ReachabilityIndex(final int[] offsets, final int[] targets)
+	{
+		this.offsets = offsets;
+		this.targets = targets;
+		final int n = offsets.length - 1;
+		this.low = new int[LABELLINGS][n];
+		this.rank = new int[LABELLINGS][n];
+		this.treePre = new int[n];
+		this.treePost = new int[n];
+		final Random random = new Random(SEED);
+		for(int i = 0; i < LABELLINGS; i++)
+			label(i, random);
+	}
+
+	/**
+	 * One randomised, iterative depth first search over the whole graph, starting from its roots.
+	 */
+	private void label(final int labelling, final Random random)
+	{
+		final int n = offsets.length - 1;
+		final int[] lowLabel = low[labelling];
+		final int[] rankLabel = rank[labelling];
+		final boolean[] hasParent = new boolean[n];
+		for(final int target : targets)
+			hasParent[target] = true;
+		final int[] roots = shuffled(n, random);
+
+		final BitSet visited = new BitSet(n);
+		final int[] stack = new int[n];
+		final int[] next = new int[n];				// how many children of each node on the stack have been walked
+		final int[][] order = new int[n][];			// randomised child order of each node on the stack
+		int post = 0;
+		int pre = 0;
+		for(final int root : roots)
+		{
+			if(hasParent[root])
+				continue;
+			int top = 0;
+			stack[0] = root;
+			next[root] = 0;
+			order[root] = shuffled(offsets[root], offsets[root + 1], random);
+			visited.set(root);
+			lowLabel[root] = Integer.MAX_VALUE;
+			if(labelling == 0)
+				treePre[root] = pre++;
+			while(top >= 0)
+			{
+				final int node = stack[top];
+				if(next[node] < order[node].length)
+				{
+					final int child = targets[order[node][next[node]++]];
+					if(!visited.get(child))
+					{
+						visited.set(child);
+						lowLabel[child] = Integer.MAX_VALUE;
+						if(labelling == 0)
+							treePre[child] = pre++;
+						next[child] = 0;
+						order[child] = shuffled(offsets[child], offsets[child + 1], random);
+						stack[++top] = child;
+					}
+					else
+						lowLabel[node] = Math.min(lowLabel[node], lowLabel[child]);
+				}
+				else
+				{
+					//every descendant is numbered, so number this node and hand its interval to its parent
+					rankLabel[node] = post++;
+					lowLabel[node] = Math.min(lowLabel[node], rankLabel[node]);
+					if(labelling == 0)
+						treePost[node] = pre++;
+					order[node] = null;
+					top--;
+					if(top >= 0)
+						lowLabel[stack[top]] = Math.min(lowLabel[stack[top]], lowLabel[node]);
+				}
+			}
+		}
+	}
+
+	private static int[] shuffled(final int n, final Random random)
+	{
+		return shuffled(0, n, random);
+	}
+
+	private static int[] shuffled(final int from, final int to, final Random random)
+	{
+		final int[] values = new int[to - from];
+		for(int i = 0; i < values.length; i++)
+			values[i] = from + i;
+		for(int i = values.length - 1; i > 0; i--)
+		{
+			final int j = random.nextInt(i + 1);
+			final int swap = values[i];
+			values[i] = values[j];
+			values[j] = swap;
+		}
+		return values;
+	}
+
+	/**
+	 * @return false if some labelling proves that u cannot reach v
+	 */
+	private boolean mayReach(final int u, final int v)
+	{
+		for(int i = 0; i < LABELLINGS; i++)
+		{
+			if(low[i][v] < low[i][u] || rank[i][v] > rank[i][u])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if v is in u's subtree of the spanning forest, which means u reaches v
+	 */
+	private boolean treeReaches(final int u, final int v)
+	{
+		return treePre[u] <= treePre[v] && treePost[v] <= treePost[u];
+	}
+
+	/**
+	 * Can node u reach node v? A node can always reach itself.
+	 *
+	 * @param u id of the source node
+	 * @param v id of the destination node
+	 * @return true if there is a path from u to v
+	 */
+	boolean reaches(final int u, final int v)
+	{
+		if(!mayReach(u, v))
+			return false;
+		if(treeReaches(u, v))
+			return true;
+
+		final BitSet visited = new BitSet();
+		final Deque<Integer> stack = new ArrayDeque<>();
+		visited.set(u);
+		stack.push(u);
+		while(!stack.isEmpty())
+		{
+			final int node = stack.pop();
+			for(int e = offsets[node]; e < offsets[node + 1]; e++)
+			{
+				final int child = targets[e];
+				if(visited.get(child) || !mayReach(child, v))
+					continue;
+				if(treeReaches(child, v))
+					return true;
+				visited.set(child);
+				stack.push(child);
+			}
+		}
+		return false;
+	}
+}
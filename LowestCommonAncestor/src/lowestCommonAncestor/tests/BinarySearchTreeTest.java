@@ -1,8 +1,22 @@
 package lowestCommonAncestor.tests;
 
 import lowestCommonAncestor.BinarySearchTree;
+import lowestCommonAncestor.Pair;
 import static org.junit.Assert.*;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
 import org.junit.Test;
 
 public class BinarySearchTreeTest {
@@ -111,6 +125,288 @@ public class BinarySearchTreeTest {
 		assertEquals("Testing median() for EDCBA tree", expectedResult, testTree.median());
 	}
 	
+	@Test
+	public void testBalanced()
+	{
+		BinarySearchTree<Integer, Integer> testTree = new BinarySearchTree<>(true);
+		final int count = (1 << 16) - 1;
+		
+		//sorted input would give an unbalanced tree of height count - 1
+		for(int i = 1; i <= count; i++)
+			testTree.put(i, i);
+		assertEquals("Testing size of balanced tree", count, testTree.size());
+		assertTrue("Testing height of balanced tree after sorted puts", testTree.height() < 2 * 16);
+		assertEquals("Testing median() of balanced tree", (Integer) ((count + 1) / 2), testTree.median());
+		
+		//deleting every key from the low end, including the root, must keep it balanced too
+		for(int i = 1; i <= count / 2; i++)
+			testTree.delete(i);
+		assertEquals("Testing size of balanced tree after deletes", count - count / 2, testTree.size());
+		assertTrue("Testing height of balanced tree after deletes", testTree.height() < 2 * 15);
+		assertNull(testTree.get(count / 2));
+		for(int i = count / 2 + 1; i <= count; i++)
+			assertEquals((Integer) i, testTree.get(i));
+	}
+	
+	@Test
+	public void testDegenerateTree()
+	{
+		//sorted puts give a tree that is a single chain, deep enough to overflow the stack if anything recurses
+		BinarySearchTree<Integer, Integer> testTree = new BinarySearchTree<>();
+		final int count = 20000;
+		for(int i = 0; i < count; i++)
+			testTree.put(i, i);
+		assertEquals("Testing height of degenerate tree", count - 1, testTree.height());
+		assertEquals("Testing median() of degenerate tree", (Integer) ((count + 1) / 2 - 1), testTree.median());
+		assertEquals("Testing get() in degenerate tree", (Integer) (count - 1), testTree.get(count - 1));
+		assertEquals("Testing getPath() in degenerate tree", count, testTree.getPath(count - 1).size());
+		assertEquals("Testing LCA in degenerate tree", (Integer) (count - 3), testTree.LCA(count - 1, count - 2));
+		
+		testTree.delete(0);
+		testTree.delete(count - 1);
+		assertEquals("Testing height of degenerate tree after deletes", count - 3, testTree.height());
+		assertEquals("Testing size of degenerate tree after deletes", count - 2, testTree.size());
+	}
+	
+	//height of the tree worked out again from the depth of every key, -1 when it is empty
+	private static int recomputedHeight(BinarySearchTree<Integer, Integer> testTree)
+	{
+		int height = -1;
+		for(Integer key : testTree.keys())
+			height = Math.max(height, testTree.getPath(key).size() - 1);
+		return height;
+	}
+	
+	@Test
+	public void testCachedHeight()
+	{
+		//mixed puts, deletes of leaves, inner nodes and the smallest and largest keys, in every kind of tree
+		final List<BinarySearchTree<Integer, Integer>> trees = Arrays.asList(
+				new BinarySearchTree<Integer, Integer>(), new BinarySearchTree<Integer, Integer>(true),
+				BinarySearchTree.<Integer, Integer>persistent(false), BinarySearchTree.<Integer, Integer>persistent(true));
+		for(BinarySearchTree<Integer, Integer> testTree : trees)
+		{
+			final Random random = new Random(3);
+			for(int i = 0; i < 3000; i++)
+			{
+				final int operation = random.nextInt(10);
+				if(operation < 6 || testTree.isEmpty())
+					testTree.put(random.nextInt(400), i);
+				else if(operation < 8)
+					testTree.delete(random.nextInt(400));
+				else if(operation == 8)
+					testTree.delete(testTree.select(0));
+				else
+					testTree.delete(testTree.select(testTree.size() - 1));
+				assertEquals("Testing cached height after operation " + i, recomputedHeight(testTree), testTree.height());
+			}
+		}
+	}
+	
+	@Test
+	public void testBulkLoad()
+	{
+		//test sorted input
+		final int count = 100000;
+		final List<Pair<Integer, Integer>> sorted = new ArrayList<>();
+		for(int i = 0; i < count; i++)
+			sorted.add(Pair.of(i, i));
+		BinarySearchTree<Integer, Integer> testTree = BinarySearchTree.fromSorted(sorted.iterator(), false);
+		assertEquals("Testing size of bulk loaded tree", count, testTree.size());
+		assertEquals("Testing height of bulk loaded tree", 16, testTree.height());
+		assertEquals("Testing median() of bulk loaded tree", (Integer) ((count + 1) / 2 - 1), testTree.median());
+		assertEquals((Integer) 12345, testTree.get(12345));
+		
+		//test empty input
+		assertTrue(BinarySearchTree.fromSorted(new ArrayList<Pair<Integer, Integer>>().iterator(), true).isEmpty());
+		
+		//test unsorted input with a repeated key merged into an existing tree, with a null value deleting a key
+		BinarySearchTree<Integer, Character> mergeTree = new BinarySearchTree<>();
+		mergeTree.put(2, 'b');
+		mergeTree.put(4, 'd');
+		mergeTree.put(6, 'f');
+		mergeTree.putAll(Arrays.asList(Pair.of(5, 'e'), Pair.of(1, 'x'), Pair.of(4, 'D'), Pair.of(6, (Character) null), Pair.of(1, 'a')).iterator());
+		assertEquals("Testing size after putAll", 4, mergeTree.size());
+		assertEquals("Testing height after putAll", 2, mergeTree.height());
+		assertEquals((Character) 'a', mergeTree.get(1));
+		assertEquals((Character) 'b', mergeTree.get(2));
+		assertEquals((Character) 'D', mergeTree.get(4));
+		assertEquals((Character) 'e', mergeTree.get(5));
+		assertNull(mergeTree.get(6));
+	}
+	
+	@Test
+	public void testOrderStatistics()
+	{
+		BinarySearchTree<Integer, Integer> testTree = new BinarySearchTree<>();
+		//testing empty tree
+		assertNull(testTree.select(0));
+		assertEquals(0, testTree.rank(5));
+		assertNull(testTree.percentile(50));
+		assertEquals(0, testTree.countInRange(1, 9));
+		assertNull(testTree.floor(5));
+		assertNull(testTree.ceiling(5));
+		
+		//keys 10, 20, ..., 100
+		for(int key : new int[] {70, 20, 90, 10, 40, 30, 60, 50, 80, 100})
+			testTree.put(key, key);
+		
+		assertEquals((Integer) 10, testTree.select(0));
+		assertEquals((Integer) 40, testTree.select(3));
+		assertEquals((Integer) 100, testTree.select(9));
+		assertNull(testTree.select(10));
+		assertNull(testTree.select(-1));
+		
+		assertEquals(0, testTree.rank(10));
+		assertEquals(3, testTree.rank(40));
+		assertEquals(4, testTree.rank(45));
+		assertEquals(10, testTree.rank(200));
+		
+		assertEquals((Integer) 10, testTree.percentile(0));
+		assertEquals(testTree.median(), testTree.percentile(50));
+		assertEquals((Integer) 90, testTree.percentile(90));
+		assertEquals((Integer) 100, testTree.percentile(91));
+		assertEquals((Integer) 100, testTree.percentile(100));
+		assertNull(testTree.percentile(101));
+		
+		//with keys 1..100 the p-th percentile is the key p, for every integer p
+		BinarySearchTree<Integer, Integer> hundred = new BinarySearchTree<>();
+		for(int i = 1; i <= 100; i++)
+			hundred.put(i, i);
+		assertEquals((Integer) 1, hundred.percentile(0));
+		for(int p = 1; p <= 100; p++)
+			assertEquals("Testing percentile(" + p + ") of keys 1..100", (Integer) p, hundred.percentile(p));
+		
+		assertEquals(3, testTree.countInRange(20, 40));
+		assertEquals(2, testTree.countInRange(15, 35));
+		assertEquals(10, testTree.countInRange(0, 1000));
+		assertEquals(0, testTree.countInRange(40, 20));
+		
+		assertEquals((Integer) 40, testTree.floor(40));
+		assertEquals((Integer) 40, testTree.floor(49));
+		assertNull(testTree.floor(9));
+		assertEquals((Integer) 50, testTree.ceiling(41));
+		assertEquals((Integer) 100, testTree.ceiling(100));
+		assertNull(testTree.ceiling(101));
+	}
+
+	@Test
+	public void testIterators()
+	{
+		BinarySearchTree<Integer, Integer> testTree = new BinarySearchTree<>();
+		assertFalse(testTree.keys().iterator().hasNext());
+		assertEquals(0, testTree.entries().count());
+
+		//keys put in a shuffled order, every other one, so the range bounds fall between keys too
+		final int count = 10000;
+		List<Integer> keys = new ArrayList<>();
+		for (int i = 0; i < count; i++)
+			keys.add(2 * i);
+		List<Integer> shuffled = new ArrayList<>(keys);
+		Collections.shuffle(shuffled, new Random(1));
+		for (int key : shuffled)
+			testTree.put(key, -key);
+
+		List<Integer> walked = new ArrayList<>();
+		for (int key : testTree.keys())
+			walked.add(key);
+		assertEquals("Testing keys() in order", keys, walked);
+
+		walked.clear();
+		for (int key : testTree.range(99, 200))
+			walked.add(key);
+		assertEquals("Testing range() between keys", keys.subList(50, 101), walked);
+		walked.clear();
+		for (int key : testTree.range(100, 100))
+			walked.add(key);
+		assertEquals("Testing range() of a single key", Arrays.asList(100), walked);
+		assertFalse(testTree.range(7, 5).iterator().hasNext());
+
+		List<Integer> values = testTree.entries().parallel().map(Map.Entry::getValue).collect(Collectors.toList());
+		assertEquals("Testing parallel entries() count", count, values.size());
+		for (int i = 0; i < count; i++)
+			assertEquals("Testing parallel entries() in order", (Integer) (-2 * i), values.get(i));
+
+		//split down to single keys, the pieces must still cover every key once and in order
+		Deque<Spliterator<Map.Entry<Integer, Integer>>> pieces = new ArrayDeque<>();
+		pieces.push(testTree.entries().spliterator());
+		walked.clear();
+		while (!pieces.isEmpty())
+		{
+			Spliterator<Map.Entry<Integer, Integer>> piece = pieces.pop();
+			long size = piece.estimateSize();
+			Spliterator<Map.Entry<Integer, Integer>> prefix = piece.trySplit();
+			if (prefix == null)
+				piece.forEachRemaining(entry -> walked.add(entry.getKey()));
+			else
+			{
+				assertEquals("Testing split sizes", size, prefix.estimateSize() + piece.estimateSize());
+				pieces.push(piece);
+				pieces.push(prefix);
+			}
+		}
+		assertEquals("Testing fully split entries()", keys, walked);
+	}
+
+	@Test
+	public void testSnapshot()
+	{
+		BinarySearchTree<Integer, Integer> tree = BinarySearchTree.persistent(true);
+		for (int i = 1; i <= 100; i++)
+			tree.put(i, i);
+		BinarySearchTree<Integer, Integer> snapshot = tree.snapshot();
+		String keys = snapshot.printKeysInOrder();
+
+		for (int i = 1; i <= 100; i += 2)
+			tree.delete(i);
+		for (int i = 101; i <= 200; i++)
+			tree.put(i, i);
+		tree.put(2, -2);
+
+		assertEquals("Checking the snapshot keeps its version", keys, snapshot.printKeysInOrder());
+		assertEquals("Checking snapshot size", 100, snapshot.size());
+		assertEquals("Checking snapshot median", Integer.valueOf(50), snapshot.median());
+		assertEquals("Checking snapshot value", Integer.valueOf(2), snapshot.get(2));
+		assertEquals("Checking the tree moved on", 150, tree.size());
+		assertEquals("Checking the tree value", Integer.valueOf(-2), tree.get(2));
+		assertFalse(tree.contains(1));
+
+		snapshot.delete(50);
+		assertFalse(snapshot.contains(50));
+		assertTrue("Checking a delete on a snapshot stays out of the tree", tree.contains(50));
+
+		try {
+			new BinarySearchTree<Integer, Integer>().snapshot();
+			fail("Checking a tree that changes in place cannot take snapshots");
+		} catch (UnsupportedOperationException e) {
+			//expected
+		}
+	}
+
+	@Test
+	public void testPrintToAppendable() throws IOException
+	{
+		BinarySearchTree<Integer, Integer> bst = new BinarySearchTree<>();
+		StringWriter out = new StringWriter();
+		bst.printKeysInOrder(out);
+		bst.prettyPrintKeys(out);
+		assertEquals("Checking printing of empty tree", "()-null\n", out.toString());
+		
+		bst.put(7, 7);
+		bst.put(8, 8);
+		bst.put(3, 3);
+		bst.put(1, 1);
+		bst.put(2, 2);
+		
+		out = new StringWriter();
+		bst.printKeysInOrder(out);
+		assertEquals("Checking in-order printing to a Writer", bst.printKeysInOrder(), out.toString());
+		
+		StringBuilder builder = new StringBuilder();
+		bst.prettyPrintKeys(builder);
+		assertEquals("Checking pretty printing to a StringBuilder", bst.prettyPrintKeys(), builder.toString());
+	}
+	
 	/** <p>Test {@link BinarySearchTree#delete(Comparable)}.</p> */
     @Test
     public void testDelete() {
@@ -209,4 +505,35 @@ public class BinarySearchTreeTest {
 		expectedResult = 7;
 		assertEquals("", expectedResult, testBST.LCA(5, 1));
     }
+    
+    @Test
+    public void testBatchLCA() {
+    	//testing empty tree
+    	assertEquals(Arrays.asList((Integer) null), testBST.LCA(Arrays.asList(Pair.of(2, 4))));
+    	
+    	testBST.put(7, '7');   //        _7_
+    	testBST.put(8, '8');   //      /     \
+    	testBST.put(3, '3');   //    _3_      8
+    	testBST.put(1, '1');   //  /     \
+    	testBST.put(2, '2');   // 1       6
+    	testBST.put(6, '6');   //  \     /
+    	testBST.put(4, '4');   //   2   4
+    	testBST.put(5, '5');   //        \
+    	                       //         5
+    	
+    	//every pair of keys, plus invalid ones, must give the same answer as the single query
+    	final List<Pair<Integer, Integer>> queries = new ArrayList<>();
+    	for(int i = -1; i <= 9; i++)
+    		for(int j = -1; j <= 9; j++)
+    			queries.add(Pair.of(i, j));
+    	queries.add(Pair.of(null, 3));
+    	final List<Integer> results = testBST.LCA(queries);
+    	assertEquals(queries.size(), results.size());
+    	for(int i = 0; i < queries.size(); i++)
+    	{
+    		final Pair<Integer, Integer> query = queries.get(i);
+    		final Integer expectedResult = query.first() == null ? null : testBST.LCA(query.first(), query.second());
+    		assertEquals(query.toString(), expectedResult, results.get(i));
+    	}
+    }
 }
\ No newline at end of file
@@ -0,0 +1,108 @@
+package lowestCommonAncestor.tests;
+
+import lowestCommonAncestor.ConcurrentBinarySearchTree;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class ConcurrentBinarySearchTreeTest {
+	private static final int KEYS = 1 << 16;
+
+	@Test
+	public void testConcurrentWriters() throws Exception
+	{
+		final ConcurrentBinarySearchTree<Integer, Integer> tree = new ConcurrentBinarySearchTree<>(true);
+		final int threads = 4;
+		final ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			final List<Future<?>> writers = new ArrayList<>();
+			for(int t = 0; t < threads; t++)
+			{
+				final int offset = t;
+				writers.add(pool.submit(() -> {
+					for(int key = offset; key < 20000; key += threads)
+						tree.put(key, key);
+				}));
+			}
+			for(final Future<?> writer : writers)
+				writer.get();
+		} finally {
+			pool.shutdown();
+		}
+		assertEquals("Testing no put was lost", 20000, tree.size());
+		for(int key = 0; key < 20000; key++)
+			assertEquals((Integer) key, tree.get(key));
+	}
+
+	/**
+	 * Reads from a growing number of threads while one thread keeps rewriting the tree.
+	 * Every read must see a consistent version of the tree, and the read throughput is printed
+	 * for each thread count.
+	 */
+	@Test
+	public void testReadScaling() throws Exception
+	{
+		final ConcurrentBinarySearchTree<Integer, Integer> tree = new ConcurrentBinarySearchTree<>(true);
+		for(int key = 0; key < KEYS; key += 2)
+			tree.put(key, key);
+
+		final int cores = Runtime.getRuntime().availableProcessors();
+		for(int threads = 1; threads <= cores; threads *= 2)
+		{
+			final AtomicBoolean running = new AtomicBoolean(true);
+			final ExecutorService pool = Executors.newFixedThreadPool(threads + 1);
+			try {
+				//the writer flips the odd keys in and out, so every version holds all the even keys and its median stays in the middle half
+				final Future<?> writer = pool.submit(() -> {
+					for(int key = 1; running.get(); key = (key + 2) % KEYS)
+					{
+						if(tree.contains(key))
+							tree.delete(key);
+						else
+							tree.put(key, key);
+					}
+				});
+				final List<Future<Long>> readers = new ArrayList<>();
+				for(int t = 0; t < threads; t++)
+				{
+					final int seed = t;
+					readers.add(pool.submit((Callable<Long>) () -> {
+						long reads = 0;
+						int key = seed;
+						while(running.get())
+						{
+							key = (key * 1103515245 + 12345) & (KEYS - 1);
+							final Integer val = tree.get(key);
+							if(val != null && val != key || key % 2 == 0 && val == null)
+								throw new AssertionError("Inconsistent read of key " + key);
+							final Integer median = tree.median();
+							if(median == null || median < KEYS / 4 || median > 3 * KEYS / 4)
+								throw new AssertionError("Inconsistent median " + median);
+							reads += 2;
+						}
+						return reads;
+					}));
+				}
+				final long start = System.nanoTime();
+				Thread.sleep(200);
+				running.set(false);
+				long reads = 0;
+				for(final Future<Long> reader : readers)
+					reads += reader.get();
+				final double seconds = (System.nanoTime() - start) / 1e9;
+				writer.get();
+				System.out.printf("%d reader thread(s): %.0f reads/s%n", threads, reads / seconds);
+			} finally {
+				pool.shutdown();
+			}
+		}
+	}
+}
@@ -0,0 +1,171 @@
+package lowestCommonAncestor.tests;
+
+import lowestCommonAncestor.ConcurrentDirectedAcyclicGraph;
+import lowestCommonAncestor.DirectedAcyclicGraph;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class ConcurrentDirectedAcyclicGraphTest {
+	private static final int THREADS = 4;
+
+	// runs every task on its own thread and returns what each one returned
+	private static <T> List<T> runAll(final List<Callable<T>> tasks) throws Exception
+	{
+		final ExecutorService pool = Executors.newFixedThreadPool(tasks.size());
+		try {
+			final List<T> results = new ArrayList<>();
+			for(final Future<T> future : pool.invokeAll(tasks))
+				results.add(future.get());
+			return results;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testAddEdge()
+	{
+		ConcurrentDirectedAcyclicGraph<Integer, Character> testDAG = new ConcurrentDirectedAcyclicGraph<>();
+		testDAG.addNode(1, 'a');
+		testDAG.addNode(2, 'b');
+		testDAG.addNode(3, 'c');
+		testDAG.addNode(3, 'x');
+		testDAG.addNode(null, 'x');
+		assertEquals(3, testDAG.N());
+
+		assertTrue(testDAG.addEdge(1, 2));
+		assertTrue(testDAG.addEdge(2, 3));
+		assertFalse("Testing cycle", testDAG.addEdge(3, 1));
+		assertFalse("Testing self-loop", testDAG.addEdge(2, 2));
+		assertFalse("Testing invalid key", testDAG.addEdge(1, 4));
+		assertEquals(2, testDAG.E());
+		assertEquals(1, testDAG.outdegree(1));
+
+		DirectedAcyclicGraph<Integer, Character> snapshot = testDAG.snapshot();
+		assertEquals("1 2 3 ", snapshot.topologicalSort());
+		assertTrue(snapshot.isValidNode(3, 'c'));
+		assertEquals((Integer) 2, snapshot.LCA(3, 2));
+	}
+
+	@Test
+	public void testMatchesGraph()
+	{
+		//random edges in both directions, so that many inserts have to reorder nodes and some close cycles
+		ConcurrentDirectedAcyclicGraph<Integer, Integer> testDAG = new ConcurrentDirectedAcyclicGraph<>();
+		DirectedAcyclicGraph<Integer, Integer> expected = new DirectedAcyclicGraph<>();
+		final int count = 300;
+		final Random random = new Random(5);
+		for(int i = 0; i < count; i++)
+		{
+			testDAG.addNode(i, i);
+			expected.addNode(i, i);
+		}
+		for(int i = 0; i < 3 * count; i++)
+		{
+			int v = random.nextInt(count);
+			int w = random.nextInt(count);
+			if(v != w)
+				assertEquals("Testing edge " + v + " -> " + w, expected.addEdge(v, w), testDAG.addEdge(v, w));
+		}
+		assertEquals(expected.E(), testDAG.E());
+		DirectedAcyclicGraph<Integer, Integer> snapshot = testDAG.snapshot();
+		assertTrue(snapshot.isAcyclic());
+		for(int v = 0; v < count; v++)
+		{
+			assertEquals(expected.outdegree(v), testDAG.outdegree(v));
+			assertEquals(expected.depth(v), snapshot.depth(v));
+		}
+	}
+
+	@Test
+	public void testLargeInserts()
+	{
+		//a hub with many edges out of it, then a chain added from its far end; every edge already
+		//agrees with the insertion order, so none of them needs a search
+		ConcurrentDirectedAcyclicGraph<Integer, Integer> testDAG = new ConcurrentDirectedAcyclicGraph<>();
+		final int count = 80000;
+		for(int i = 0; i <= count; i++)
+			testDAG.addNode(i, i);
+		for(int i = 1; i <= count; i++)
+			assertTrue(testDAG.addEdge(0, i));
+		assertEquals(count, testDAG.outdegree(0));
+		for(int i = count - 1; i >= 1; i--)
+			assertTrue(testDAG.addEdge(i, i + 1));
+		assertFalse("Testing cycle along the whole chain", testDAG.addEdge(count, 1));
+		assertEquals(2 * count - 1, testDAG.E());
+	}
+
+	@Test
+	public void testConcurrentInserts() throws Exception
+	{
+		//each thread builds its own chain, so no insert has to wait for another thread's
+		final ConcurrentDirectedAcyclicGraph<Integer, Integer> testDAG = new ConcurrentDirectedAcyclicGraph<>();
+		final int length = 5000;
+		final List<Callable<Boolean>> tasks = new ArrayList<>();
+		for(int t = 0; t < THREADS; t++)
+		{
+			final int base = t * length;
+			tasks.add(() -> {
+				boolean added = true;
+				for(int i = 0; i < length; i++)
+				{
+					testDAG.addNode(base + i, base + i);
+					if(i > 0)
+						added &= testDAG.addEdge(base + i - 1, base + i);
+				}
+				return added;
+			});
+		}
+		for(final boolean added : runAll(tasks))
+			assertTrue(added);
+		assertEquals(THREADS * length, testDAG.N());
+		assertEquals(THREADS * (length - 1), testDAG.E());
+		DirectedAcyclicGraph<Integer, Integer> snapshot = testDAG.snapshot();
+		assertEquals(THREADS * (length - 1), snapshot.E());
+		assertEquals(length - 1, snapshot.depth(length - 1));
+	}
+
+	@Test
+	public void testConcurrentCycles() throws Exception
+	{
+		//half of the threads add the edges of a ring one way round and the other half the other way,
+		//so the graph only stays acyclic if the cycle checks see each other's edges
+		final ConcurrentDirectedAcyclicGraph<Integer, Integer> testDAG = new ConcurrentDirectedAcyclicGraph<>();
+		final int count = 300;
+		for(int i = 0; i < count; i++)
+			testDAG.addNode(i, i);
+		final List<Callable<Integer>> tasks = new ArrayList<>();
+		for(int t = 0; t < THREADS; t++)
+		{
+			final boolean forward = t % 2 == 0;
+			final int start = t * count / THREADS;
+			tasks.add(() -> {
+				int added = 0;
+				for(int i = 0; i < count; i++)
+				{
+					final int v = (start + i) % count;
+					final int w = (v + 1) % count;
+					if(forward ? testDAG.addEdge(v, w) : testDAG.addEdge(w, v))
+						added++;
+				}
+				return added;
+			});
+		}
+		int added = 0;
+		for(final int threadAdded : runAll(tasks))
+			added += threadAdded;
+		assertEquals(added, testDAG.E());
+		DirectedAcyclicGraph<Integer, Integer> snapshot = testDAG.snapshot();
+		assertEquals("Testing every accepted edge made it into the snapshot", added, snapshot.E());
+		assertTrue(snapshot.isAcyclic());
+	}
+}
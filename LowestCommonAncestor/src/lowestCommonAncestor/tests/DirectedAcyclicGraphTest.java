@@ -1,7 +1,18 @@
 package lowestCommonAncestor.tests;
 
 import lowestCommonAncestor.DirectedAcyclicGraph;
+import lowestCommonAncestor.Pair;
 import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.junit.Test;
 
 public class DirectedAcyclicGraphTest {
@@ -31,6 +42,12 @@ public class DirectedAcyclicGraphTest {
 		//test adding new Node with same key as a pre-existing Node
 		testDAG.addNode(4, 'e');
 		assertFalse(testDAG.isValidNode(4, 'e'));
+		
+		//test equal keys that are not the same boxed instance (outside the Integer cache)
+		testDAG.addNode(Integer.valueOf(1000), 'x');
+		testDAG.addNode(Integer.valueOf(1000), 'y');
+		assertTrue(testDAG.isValidNode(1000, 'x'));
+		assertEquals(3, testDAG.N());
 	}
 
 	@Test 
@@ -75,6 +92,19 @@ public class DirectedAcyclicGraphTest {
 		
 		//test non-empty graph with invalid Node
 		assertFalse(testDAG.deleteNode(3));
+		
+		//test that edges into & out of the deleted Node are removed
+		testDAG.addNode(1, 'a');
+		testDAG.addNode(2, 'b');
+		testDAG.addNode(3, 'c');
+		testDAG.addEdge(1, 2);
+		testDAG.addEdge(2, 3);
+		testDAG.addEdge(1, 3);
+		assertTrue(testDAG.deleteNode(2));
+		assertEquals(1, testDAG.E());
+		assertEquals(1, testDAG.outdegree(1));
+		assertEquals(1, testDAG.indegree(3));
+		assertEquals((Integer) 1, testDAG.LCA(3, 1));
 	}
 	
 	@Test
@@ -132,6 +162,88 @@ public class DirectedAcyclicGraphTest {
 		assertTrue(testDAG.isAcyclic()); //make sure that there hasn't been an error somewhere and that the graph is still acyclic and unchanged
 	}
 	
+	@Test
+	public void testAddEdges()
+	{
+		testDAG = new DirectedAcyclicGraph<>();
+		testDAG.addNode(1, 'a');
+		testDAG.addNode(2, 'b');
+		testDAG.addNode(3, 'c');
+		testDAG.addNode(4, 'd');
+		testDAG.addEdge(1, 2);
+		
+		//test a batch that fits
+		assertTrue(testDAG.addEdges(Arrays.asList(Pair.of(3, 4), Pair.of(2, 3))));
+		assertEquals(3, testDAG.E());
+		assertEquals(3, testDAG.depth(4));
+		assertTrue(testDAG.isReachable(1, 4));
+		String order = testDAG.topologicalSort();
+		
+		//test batches that are rejected as a whole: a cycle, an invalid key and a self-loop
+		assertFalse(testDAG.addEdges(Arrays.asList(Pair.of(1, 3), Pair.of(4, 1))));
+		assertFalse(testDAG.addEdges(Arrays.asList(Pair.of(1, 3), Pair.of(4, 9))));
+		assertFalse(testDAG.addEdges(Arrays.asList(Pair.of(1, 3), Pair.of(2, 2))));
+		assertEquals(3, testDAG.E());
+		assertEquals(1, testDAG.outdegree(1));
+		assertEquals(0, testDAG.indegree(1));
+		assertEquals(order, testDAG.topologicalSort());
+		assertTrue(testDAG.isAcyclic());
+		
+		//test that single edges still keep the order after a batch
+		assertFalse(testDAG.addEdge(4, 2));
+		assertTrue(testDAG.addEdge(1, 4));
+		assertEquals(3, testDAG.depth(4));
+	}
+	
+	@Test
+	public void testAddEdgesLongChain()
+	{
+		//every edge goes against the insertion order, the worst case for adding the edges one at a time
+		DirectedAcyclicGraph<Integer, Integer> chain = new DirectedAcyclicGraph<>();
+		final int count = 100000;
+		List<Pair<Integer, Integer>> edges = new ArrayList<>();
+		for(int i = 0; i < count; i++)
+		{
+			chain.addNode(i, i);
+			if(i > 0)
+				edges.add(Pair.of(i, i - 1));
+		}
+		assertTrue(chain.addEdges(edges));
+		assertEquals(count - 1, chain.E());
+		assertEquals(count - 1, chain.depth(0));
+		assertEquals((Integer) (count - 1), chain.topologicalOrder().get(0));
+		assertFalse(chain.addEdges(Arrays.asList(Pair.of(0, count - 1))));
+		assertFalse(chain.addEdge(0, count - 1));
+		assertTrue(chain.addEdge(count - 1, 0));
+	}
+	
+	@Test
+	public void testAddEdgeRejectsCycles()
+	{
+		testDAG = new DirectedAcyclicGraph<>();
+		
+		//nodes are added in the reverse order of the edges so every addEdge has to reorder
+		for(int i = 5; i >= 1; i--)
+			testDAG.addNode(i, (char) ('a' + i));
+		for(int i = 1; i < 5; i++)
+			assertTrue(testDAG.addEdge(i, i + 1));
+		
+		//test self loop
+		assertFalse(testDAG.addEdge(3, 3));
+		
+		//test edges closing long and short cycles
+		assertFalse(testDAG.addEdge(5, 1));
+		assertFalse(testDAG.addEdge(4, 2));
+		assertFalse(testDAG.addEdge(2, 1));
+		
+		//test shortcut edges that keep the graph acyclic
+		assertTrue(testDAG.addEdge(1, 5));
+		assertTrue(testDAG.addEdge(2, 4));
+		assertEquals(6, testDAG.E());
+		assertTrue(testDAG.isAcyclic());
+		assertEquals("1 2 3 4 5 ", testDAG.topologicalSort());
+	}
+	
 	@Test
 	public void testIsValidNodes() 
 	{
@@ -233,6 +345,30 @@ public class DirectedAcyclicGraphTest {
 
 		String expectedResult = "5 4 2 3 1 0 ";
 		assertEquals(expectedResult, testDAG.topologicalSort());
+		assertEquals(Arrays.asList(5, 4, 2, 3, 1, 0), testDAG.topologicalOrder());
+		
+		//test that the order is kept until the graph changes
+		assertSame(testDAG.topologicalOrder(), testDAG.topologicalOrder());
+		testDAG.addEdge(0, 1);
+		assertEquals(Arrays.asList(5, 4, 2, 3, 0, 1), testDAG.topologicalOrder());
+		testDAG.deleteNode(3);
+		assertEquals("5 4 2 0 1 ", testDAG.topologicalSort());
+	}
+	
+	@Test
+	public void testTopologicalSortLongChain()
+	{
+		//a chain this long would overflow the stack if the sort recursed
+		DirectedAcyclicGraph<Integer, Integer> chain = new DirectedAcyclicGraph<>();
+		final int count = 100000;
+		for(int i = 0; i < count; i++)
+			chain.addNode(i, i);
+		for(int i = 1; i < count; i++)
+			chain.addEdge(i - 1, i);
+		List<Integer> order = chain.topologicalOrder();
+		assertEquals(count, order.size());
+		for(int i = 0; i < count; i++)
+			assertEquals((Integer) i, order.get(i));
 	}
 
 	@Test
@@ -257,6 +393,157 @@ public class DirectedAcyclicGraphTest {
 		assertEquals(testDAG.N(), 6);
 	}
 
+	@Test
+	public void testDepth()
+	{
+		testDAG = new DirectedAcyclicGraph<>();
+		
+		//test invalid key
+		assertEquals(-1, testDAG.depth(1));
+		
+		testDAG.addNode(1, 'a');
+		testDAG.addNode(2, 'b');
+		testDAG.addNode(3, 'c');
+		testDAG.addNode(4, 'd');
+		testDAG.addNode(5, 'e');
+		assertEquals(0, testDAG.depth(1));
+		
+		testDAG.addEdge(4, 5);
+		testDAG.addEdge(1, 5);
+		assertEquals(1, testDAG.depth(5));
+		
+		//test that a longer path into an existing chain raises depths below it
+		testDAG.addEdge(1, 2);
+		testDAG.addEdge(2, 3);
+		testDAG.addEdge(3, 4);
+		assertEquals(3, testDAG.depth(4));
+		assertEquals(4, testDAG.depth(5));
+		
+		//test that deleting a node on the longest path lowers depths below it
+		testDAG.deleteNode(3);
+		assertEquals(0, testDAG.depth(4));
+		assertEquals(1, testDAG.depth(5));
+		assertEquals(1, testDAG.depth(2));
+	}
+	
+	@Test
+	public void testIsReachable()
+	{
+		testDAG = new DirectedAcyclicGraph<>();
+		
+		//test empty graph
+		assertFalse(testDAG.isReachable(1, 2));
+		
+		testDAG.addNode(1, 'a');
+		testDAG.addNode(2, 'b');
+		testDAG.addNode(3, 'c');
+		testDAG.addNode(4, 'd');
+		testDAG.addNode(5, 'e');
+		testDAG.addEdge(1, 2);
+		testDAG.addEdge(2, 3);
+		testDAG.addEdge(4, 3);
+		
+		assertTrue(testDAG.isReachable(1, 3));
+		assertTrue(testDAG.isReachable(4, 3));
+		assertTrue(testDAG.isReachable(2, 2));
+		assertFalse(testDAG.isReachable(3, 1));
+		assertFalse(testDAG.isReachable(1, 4));
+		assertFalse(testDAG.isReachable(5, 1));
+		assertTrue(testDAG.isAncestor(1, 3));
+		assertFalse(testDAG.isAncestor(3, 1));
+		
+		//test invalid keys
+		assertFalse(testDAG.isReachable(1, 9));
+		assertFalse(testDAG.isReachable(null, 1));
+		
+		//test that the index follows changes to the graph
+		testDAG.addEdge(3, 5);
+		assertTrue(testDAG.isReachable(1, 5));
+		testDAG.deleteNode(2);
+		assertFalse(testDAG.isReachable(1, 5));
+		assertTrue(testDAG.isReachable(4, 5));
+		testDAG.addNode(6, 'f');
+		testDAG.addEdge(6, 1);
+		assertTrue(testDAG.isAncestor(6, 1));
+	}
+	
+	@Test
+	public void testConcurrentQueries() throws Exception
+	{
+		DirectedAcyclicGraph<Integer, Integer> shared = new DirectedAcyclicGraph<>();
+		final int count = 2000;
+		final Random random = new Random(11);
+		for(int i = 0; i < count; i++)
+			shared.addNode(i, i);
+		for(int i = 0; i < 4 * count; i++)
+		{
+			int v = random.nextInt(count);
+			int w = random.nextInt(count);
+			if(v != w)
+				shared.addEdge(Math.min(v, w), Math.max(v, w));
+		}
+		final int queries = 2000;
+		final int[] v = new int[queries];
+		final int[] w = new int[queries];
+		final Integer[] expected = new Integer[queries];
+		for(int i = 0; i < queries; i++)
+		{
+			v[i] = random.nextInt(count);
+			w[i] = random.nextInt(count);
+			expected[i] = shared.LCA(v[i], w[i]);
+		}
+		final String order = shared.topologicalSort();
+		shared.addNode(count, count); //drop the cached order, so the threads race to rebuild it
+		final String newOrder = count + " " + order; //a node without edges is searched last, so it comes first
+		
+		//every thread sorts and answers every query, any interference between them shows up as a wrong answer
+		final int threads = 4;
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try
+		{
+			List<Future<Boolean>> results = new ArrayList<>();
+			for(int t = 0; t < threads; t++)
+			{
+				results.add(pool.submit(() -> {
+					boolean correct = newOrder.equals(shared.topologicalSort());
+					for(int i = 0; i < queries; i++)
+						correct &= Objects.equals(expected[i], shared.LCA(v[i], w[i]));
+					return correct;
+				}));
+			}
+			for(Future<Boolean> result : results)
+				assertTrue("Testing queries from concurrent threads", result.get());
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+	
+	@Test
+	public void testLCAOnDiamondChain()
+	{
+		//a chain of 40 diamonds has 2^40 paths from the top to the bottom
+		DirectedAcyclicGraph<Integer, Character> diamonds = new DirectedAcyclicGraph<>();
+		final int count = 40;
+		diamonds.addNode(0, 'r');
+		for(int i = 0; i < count; i++)
+		{
+			final int top = 3 * i;
+			diamonds.addNode(top + 1, 'l');
+			diamonds.addNode(top + 2, 'r');
+			diamonds.addNode(top + 3, 'b');
+			diamonds.addEdge(top, top + 1);
+			diamonds.addEdge(top, top + 2);
+			diamonds.addEdge(top + 1, top + 3);
+			diamonds.addEdge(top + 2, top + 3);
+		}
+		final int bottom = 3 * count;
+		assertEquals((Integer) (bottom - 3), diamonds.LCA(bottom - 1, bottom - 2));
+		assertEquals((Integer) (bottom - 1), diamonds.LCA(bottom, bottom - 1));
+		assertEquals((Integer) 0, diamonds.LCA(1, 2));
+	}
+
 	/**
 	 * The tests for LCA are in a separate file for ease because they are parameterised tests
 	 */
@@ -0,0 +1,138 @@
+package lowestCommonAncestor.tests;
+
+import lowestCommonAncestor.DirectedAcyclicGraph;
+import lowestCommonAncestor.EdgeListLoader;
+import static org.junit.Assert.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class EdgeListLoaderTest {
+
+	private static Path write(final String contents) throws IOException
+	{
+		final Path file = Files.createTempFile("edges", ".txt");
+		file.toFile().deleteOnExit();
+		Files.write(file, contents.getBytes(StandardCharsets.US_ASCII));
+		return file;
+	}
+
+	@Test
+	public void testLoad() throws IOException
+	{
+		final Path file = write(
+				"# the graph from topologicalSortTest\n" +
+				"n 0 97\n" +
+				"n 1\t98\r\n" +
+				"n 2 99  # a comment after a record\n" +
+				"\n" +
+				"n 3 100\n" +
+				"n 4 101\n" +
+				"n 5 102\n" +
+				"e 5 2\n" +
+				"e 5 0\n" +
+				"e 4 0\n" +
+				"e 4 1\n" +
+				"e 2 3\n" +
+				"e 3 1\n" +
+				"e -1 5\n" +
+				"e 1 7");
+		final DirectedAcyclicGraph<Integer, Character> graph = EdgeListLoader.load(file, value -> (char) value);
+		assertEquals(8, graph.N());
+		assertEquals(8, graph.E());
+		assertTrue(graph.isValidNode(1, 'b'));
+		assertTrue(graph.isValidNode(2, 'c'));
+		assertTrue("Testing a node added for an edge takes the value of its id", graph.isValidNode(7, (char) 7));
+		assertEquals("-1 5 4 2 3 1 7 0 ", graph.topologicalSort());
+		assertEquals((Integer) 3, graph.LCA(1, 3));
+	}
+
+	@Test
+	public void testMalformed() throws IOException
+	{
+		final String[] malformed = {
+			"x 1\n",
+			"n\n",
+			"n 1 2 3\n",
+			"e 1\n",
+			"e 1 2 3\n",
+			"e 1 - 2\n",
+			"n 1a\n",
+			"1 2\n",
+			"n 99999999999\n",
+			"e 1 2\ne 2 1\n",
+			"n 1\nn 1 2\n"
+		};
+		for(final String contents : malformed)
+		{
+			try {
+				EdgeListLoader.load(write(contents), value -> value);
+				fail("Testing malformed input " + contents);
+			} catch (IOException e) {
+				//expected
+			}
+		}
+	}
+
+	@Test
+	public void testLateDeclaration() throws IOException
+	{
+		//node 5 already has the value of its id from the edge, so a later declaration cannot give it 7
+		try {
+			EdgeListLoader.load(write("e 5 6\nn 5 7\n"), value -> value);
+			fail("Testing a node declared after an edge used it");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("line 2: "));
+		}
+	}
+
+	@Test
+	public void testProgress() throws IOException
+	{
+		//a long chain, written against the order the nodes appear in
+		final int count = 200000;
+		final Path file = Files.createTempFile("chain", ".txt");
+		file.toFile().deleteOnExit();
+		try(BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.US_ASCII))
+		{
+			for(int i = 1; i < count; i++)
+				out.write("e " + i + " " + (i - 1) + "\n");
+		}
+		final List<long[]> reports = new ArrayList<>();
+		final List<Long> inserted = new ArrayList<>();
+		final DirectedAcyclicGraph<Integer, Integer> graph = EdgeListLoader.load(file, value -> value, new EdgeListLoader.Progress() {
+			@Override
+			public void update(long bytes, long totalBytes, long nodes, long edges, long nanos)
+			{
+				reports.add(new long[] {bytes, totalBytes, nodes, edges, nanos});
+			}
+
+			@Override
+			public void inserting(long added, long edges, long nanos)
+			{
+				assertEquals(count - 1, edges);
+				inserted.add(added);
+			}
+		});
+		assertEquals(count, graph.N());
+		assertEquals(count - 1, graph.E());
+		assertEquals(count - 1, graph.depth(0));
+
+		assertFalse(reports.isEmpty());
+		final long[] last = reports.get(reports.size() - 1);
+		assertEquals("Testing the last report covers the whole file", Files.size(file), last[0]);
+		assertEquals(Files.size(file), last[1]);
+		assertEquals(count, last[2]);
+		assertEquals(count - 1, last[3]);
+		assertEquals("Testing the edges are reported while they are added", Arrays.asList(65536L, 131072L, 196608L), inserted);
+		System.out.printf("Loaded %d edges at %.1f MB/s%n", last[3], last[0] * 1e3 / last[4]);
+	}
+}
@@ -0,0 +1,135 @@
+package lowestCommonAncestor.tests;
+
+import lowestCommonAncestor.DirectedAcyclicGraph;
+import lowestCommonAncestor.FrozenDirectedAcyclicGraph;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class FrozenDirectedAcyclicGraphTest {
+
+	@Test
+	public void testFreeze()
+	{
+		DirectedAcyclicGraph<Integer, Character> testDAG = new DirectedAcyclicGraph<>();
+		
+		//test empty graph
+		FrozenDirectedAcyclicGraph<Integer, Character> frozen = testDAG.freeze();
+		assertEquals(0, frozen.N());
+		assertEquals("", frozen.topologicalSort());
+		assertNull(frozen.LCA(1, 2));
+
+		testDAG.addNode(0, 'a');
+		testDAG.addNode(1, 'b');
+		testDAG.addNode(2, 'c');
+		testDAG.addNode(3, 'd');
+		testDAG.addNode(4, 'e');
+		testDAG.addNode(5, 'f');
+		testDAG.addEdge(5, 2);
+		testDAG.addEdge(5, 0);
+		testDAG.addEdge(4, 0);
+		testDAG.addEdge(4, 1);
+		testDAG.addEdge(2, 3);
+		testDAG.addEdge(3, 1);
+
+		frozen = testDAG.freeze();
+		assertSame("Testing that an unchanged graph hands out the same snapshot", frozen, testDAG.freeze());
+		assertEquals(6, frozen.N());
+		assertEquals(6, frozen.E());
+		assertEquals(testDAG.topologicalSort(), frozen.topologicalSort());
+		assertEquals(Arrays.asList(5, 4, 2, 3, 1, 0), frozen.topologicalOrder());
+		assertEquals((Character) 'f', frozen.val(5));
+		assertNull(frozen.val(9));
+		assertEquals(2, frozen.indegree(1));
+		assertEquals(2, frozen.outdegree(5));
+		assertEquals(-1, frozen.outdegree(9));
+		assertEquals(3, frozen.depth(1));
+		assertTrue(frozen.isReachable(5, 1));
+		assertFalse(frozen.isReachable(1, 5));
+		assertEquals((Integer) 4, frozen.LCA(1, 0));
+		assertEquals((Integer) 3, frozen.LCA(3, 1));
+
+		//test that later changes do not show up in the snapshot
+		testDAG.deleteNode(3);
+		testDAG.addNode(6, 'g');
+		assertNotSame(frozen, testDAG.freeze());
+		assertEquals(6, frozen.N());
+		assertTrue(frozen.isValidNode(3));
+		assertFalse(frozen.isValidNode(6));
+		assertTrue(frozen.isReachable(5, 1));
+		assertFalse(testDAG.freeze().isReachable(5, 1));
+	}
+
+	@Test
+	public void testLCA()
+	{
+		//the graph and cases of LCATest, answered by the live graph and by its snapshot
+		DirectedAcyclicGraph<Integer, Character> testDAG = new DirectedAcyclicGraph<>();
+		for(int i = 1; i <= 15; i++)
+			testDAG.addNode(i, (char) ('a' + i - 1));
+		final int[][] edges = {
+			{1, 2}, {2, 4}, {4, 6}, {1, 3}, {3, 5}, {5, 8}, {5, 7}, {7, 10},
+			{10, 9}, {10, 13}, {10, 11}, {11, 12}, {6, 13}, {6, 7}, {15, 6}, {15, 4}
+		};
+		for(int[] edge : edges)
+			testDAG.addEdge(edge[0], edge[1]);
+
+		FrozenDirectedAcyclicGraph<Integer, Character> frozen = testDAG.freeze();
+		final Object[][] cases = {
+			{20, -4, null}, {20, 6, null}, {8, -4, null}, {8, 9, 5}, {12, 6, 6},
+			{3, 1, 1}, {14, 1, null}, {13, 12, 10}, {7, 13, 7}
+		};
+		for(Object[] lca : cases)
+		{
+			assertEquals(lca[2], testDAG.LCA((Integer) lca[0], (Integer) lca[1]));
+			assertEquals("Testing frozen LCA of " + lca[0] + " and " + lca[1], lca[2], frozen.LCA((Integer) lca[0], (Integer) lca[1]));
+		}
+	}
+
+	@Test
+	public void testMatchesGraph()
+	{
+		//random DAG, edges only go from lower to higher keys so none is rejected
+		DirectedAcyclicGraph<Integer, Integer> testDAG = new DirectedAcyclicGraph<>();
+		final int count = 500;
+		final Random random = new Random(7);
+		for(int i = 0; i < count; i++)
+			testDAG.addNode(i, i);
+		for(int i = 0; i < 3 * count; i++)
+		{
+			int v = random.nextInt(count);
+			int w = random.nextInt(count);
+			if(v != w)
+				testDAG.addEdge(Math.min(v, w), Math.max(v, w));
+		}
+		FrozenDirectedAcyclicGraph<Integer, Integer> frozen = testDAG.freeze();
+		assertEquals(testDAG.E(), frozen.E());
+		assertEquals(testDAG.topologicalSort(), frozen.topologicalSort());
+
+		//every edge goes forward in the topological order
+		List<Integer> order = frozen.topologicalOrder();
+		int[] position = new int[count];
+		for(int i = 0; i < count; i++)
+			position[order.get(i)] = i;
+		for(int v = 0; v < count; v++)
+		{
+			for(int w = v + 1; w < count; w++)
+			{
+				if(frozen.isReachable(v, w))
+					assertTrue(position[v] < position[w]);
+			}
+		}
+
+		for(int i = 0; i < 2000; i++)
+		{
+			int v = random.nextInt(count);
+			int w = random.nextInt(count);
+			assertEquals("Testing LCA of " + v + " and " + w, testDAG.LCA(v, w), frozen.LCA(v, w));
+			assertEquals(testDAG.depth(v), frozen.depth(v));
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package lowestCommonAncestor.tests;
+
+import lowestCommonAncestor.BinarySearchTree;
+import lowestCommonAncestor.IntBinarySearchTree;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class IntBinarySearchTreeTest {
+
+	@Test
+	public void testHeight()
+	{
+		IntBinarySearchTree<Character> testTree = new IntBinarySearchTree<>();
+		//Test empty tree
+		assertEquals("Testing height for empty tree", -1, testTree.height());
+		assertTrue("Testing empty tree", testTree.isEmpty());
+		
+		testTree.put(2, 'B');
+		assertEquals("Testing height for tree with 1 node", 0, testTree.height());
+		testTree.put(1, 'A');
+		testTree.put(3, 'C');
+		testTree.put(4, 'D');
+		assertEquals("Testing height for tree with 4 nodes", 2, testTree.height());
+		assertEquals("Testing size", 4, testTree.size());
+	}
+	
+	@Test
+	public void testMedian()
+	{
+		IntBinarySearchTree<Integer> testTree = new IntBinarySearchTree<>();
+		assertNull("Testing median() for empty tree", testTree.median());
+		
+		testTree.put(2, 2);
+		testTree.put(1, 1);
+		testTree.put(3, 3);
+		assertEquals("Testing median() for tree with median at root", (Integer) 2, testTree.median());
+		
+		testTree.put(4, 4);
+		testTree.put(5, 5);
+		assertEquals("Testing median() for tree with median in right subtree", (Integer) 3, testTree.median());
+	}
+	
+	@Test
+	public void testLCA()
+	{
+		IntBinarySearchTree<Character> testTree = new IntBinarySearchTree<>();
+		assertNull("Testing empty tree", testTree.LCA(2, 4));
+		
+		testTree.put(7, '7');   //        _7_
+		testTree.put(8, '8');   //      /     \
+		testTree.put(3, '3');   //    _3_      8
+		testTree.put(1, '1');   //  /     \
+		testTree.put(2, '2');   // 1       6
+		testTree.put(6, '6');   //  \     /
+		testTree.put(4, '4');   //   2   4
+		testTree.put(5, '5');   //        \
+		                        //         5
+		assertEquals((Integer) 3, testTree.LCA(2, 4));
+		assertEquals((Integer) 7, testTree.LCA(5, 8));
+		assertEquals((Integer) 6, testTree.LCA(4, 5));
+		assertNull(testTree.LCA(7, 3));
+		assertNull(testTree.LCA(-7, 3));
+		assertNull(testTree.LCA(7, -3));
+	}
+	
+	@Test
+	public void testDelete()
+	{
+		IntBinarySearchTree<Integer> testTree = new IntBinarySearchTree<>();
+		testTree.delete(1);
+		assertTrue("Deleting from empty tree", testTree.isEmpty());
+		
+		testTree.put(7, 7);
+		testTree.put(8, 8);
+		testTree.put(3, 3);
+		testTree.put(1, 1);
+		testTree.put(2, 2);
+		testTree.put(6, 6);
+		testTree.put(4, 4);
+		testTree.put(5, 5);
+		
+		testTree.delete(9);
+		assertEquals("Deleting non-existent key", 8, testTree.size());
+		testTree.delete(3);
+		assertFalse("Deleting node with two children", testTree.contains(3));
+		assertEquals((Integer) 2, testTree.LCA(1, 4));
+		testTree.delete(7);
+		assertFalse("Deleting root", testTree.contains(7));
+		assertEquals(6, testTree.size());
+		
+		//freed slots are reused
+		testTree.put(3, 33);
+		testTree.put(7, 77);
+		assertEquals((Integer) 33, testTree.get(3));
+		assertEquals((Integer) 77, testTree.get(7));
+		assertEquals(8, testTree.size());
+	}
+	
+	@Test
+	public void testMatchesBinarySearchTree()
+	{
+		//random puts and deletes must leave both kinds of tree with the same contents and shape
+		final Random random = new Random(12);
+		for(final boolean balanced : new boolean[] {false, true})
+		{
+			IntBinarySearchTree<Integer> intTree = new IntBinarySearchTree<>(balanced);
+			BinarySearchTree<Integer, Integer> tree = new BinarySearchTree<>(balanced);
+			for(int i = 0; i < 5000; i++)
+			{
+				final int key = random.nextInt(1000);
+				if(random.nextInt(3) == 0)
+				{
+					intTree.delete(key);
+					tree.delete(key);
+				}
+				else
+				{
+					intTree.put(key, i);
+					tree.put(key, i);
+				}
+			}
+			assertEquals(tree.size(), intTree.size());
+			assertEquals(tree.height(), intTree.height());
+			assertEquals(tree.median(), intTree.median());
+			for(int key = 0; key < 1000; key++)
+			{
+				assertEquals(tree.get(key), intTree.get(key));
+				assertEquals(tree.LCA(key, 999 - key), intTree.LCA(key, 999 - key));
+			}
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package lowestCommonAncestor.tests;
+
+import lowestCommonAncestor.DirectedAcyclicGraph;
+import lowestCommonAncestor.FrozenDirectedAcyclicGraph;
+import lowestCommonAncestor.LCAQueryEngine;
+import lowestCommonAncestor.Pair;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+public class LCAQueryEngineTest {
+
+	// random DAG, edges only go from lower to higher keys so none is rejected
+	private static FrozenDirectedAcyclicGraph<Integer, Integer> randomGraph(final int count, final Random random)
+	{
+		final DirectedAcyclicGraph<Integer, Integer> graph = new DirectedAcyclicGraph<>();
+		final List<Pair<Integer, Integer>> edges = new ArrayList<>();
+		for(int i = 0; i < count; i++)
+			graph.addNode(i, i);
+		for(int i = 0; i < 3 * count; i++)
+		{
+			final int v = random.nextInt(count);
+			final int w = random.nextInt(count);
+			if(v != w)
+				edges.add(Pair.of(Math.min(v, w), Math.max(v, w)));
+		}
+		graph.addEdges(edges);
+		return graph.freeze();
+	}
+
+	private static List<Pair<Integer, Integer>> randomQueries(final int count, final int queries, final Random random)
+	{
+		final List<Pair<Integer, Integer>> pairs = new ArrayList<>(queries);
+		for(int i = 0; i < queries; i++)
+			pairs.add(Pair.of(random.nextInt(count), random.nextInt(count)));
+		return pairs;
+	}
+
+	@Test
+	public void testLCA()
+	{
+		final Random random = new Random(5);
+		final FrozenDirectedAcyclicGraph<Integer, Integer> graph = randomGraph(3000, random);
+		final LCAQueryEngine<Integer, Integer> engine = new LCAQueryEngine<>(graph);
+
+		//test empty batch
+		assertTrue(engine.LCA(new ArrayList<Pair<Integer, Integer>>()).isEmpty());
+
+		//test invalid keys
+		assertEquals(Arrays.asList(null, null, null), engine.LCA(Arrays.asList(Pair.of(-1, 5), Pair.of(5, null), Pair.of(-1, -2))));
+
+		//test that every answer is the one a single query gives, in submission order
+		final List<Pair<Integer, Integer>> queries = randomQueries(3000, 10000, random);
+		final List<Integer> answers = engine.LCA(queries);
+		assertEquals(queries.size(), answers.size());
+		for(int i = 0; i < queries.size(); i++)
+			assertEquals("Testing query " + i, graph.LCA(queries.get(i).first(), queries.get(i).second()), answers.get(i));
+	}
+
+	/**
+	 * Answers the same batch on pools with a growing number of threads and prints the throughput of each.
+	 */
+	@Test
+	public void testThroughput()
+	{
+		final Random random = new Random(9);
+		final FrozenDirectedAcyclicGraph<Integer, Integer> graph = randomGraph(20000, random);
+		final List<Pair<Integer, Integer>> queries = randomQueries(20000, 50000, random);
+		final List<Integer> expected = new LCAQueryEngine<>(graph, new ForkJoinPool(1)).LCA(queries);
+
+		final int cores = Runtime.getRuntime().availableProcessors();
+		for(int threads = 1; threads <= cores; threads *= 2)
+		{
+			final ForkJoinPool pool = new ForkJoinPool(threads);
+			try {
+				final LCAQueryEngine<Integer, Integer> engine = new LCAQueryEngine<>(graph, pool);
+				engine.LCA(queries); //warm up
+				final long start = System.nanoTime();
+				final List<Integer> answers = engine.LCA(queries);
+				final double seconds = (System.nanoTime() - start) / 1e9;
+				assertEquals(expected, answers);
+				System.out.printf("%d worker thread(s): %.0f LCA queries/s%n", threads, queries.size() / seconds);
+			} finally {
+				pool.shutdown();
+			}
+		}
+	}
+}
@@ -0,0 +1,168 @@
+package lowestCommonAncestor.tests;
+
+import lowestCommonAncestor.DirectedAcyclicGraph;
+import lowestCommonAncestor.FrozenDirectedAcyclicGraph;
+import lowestCommonAncestor.MappedDirectedAcyclicGraph;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class MappedDirectedAcyclicGraphTest {
+
+	private static Path tempFile() throws IOException
+	{
+		final Path file = Files.createTempFile("dag", ".bin");
+		file.toFile().deleteOnExit();
+		return file;
+	}
+
+	@Test
+	public void testSaveAndOpen() throws IOException
+	{
+		DirectedAcyclicGraph<Integer, Character> testDAG = new DirectedAcyclicGraph<>();
+		final Path file = tempFile();
+
+		//test empty graph
+		MappedDirectedAcyclicGraph.save(testDAG, file);
+		final MappedDirectedAcyclicGraph empty = MappedDirectedAcyclicGraph.open(file);
+		assertEquals(0, empty.N());
+		assertEquals("", empty.topologicalSort());
+		assertNull(empty.LCA(1, 2));
+
+		testDAG.addNode(0, 'a');
+		testDAG.addNode(1, 'b');
+		testDAG.addNode(2, 'c');
+		testDAG.addNode(3, 'd');
+		testDAG.addNode(4, 'e');
+		testDAG.addNode(5, 'f');
+		testDAG.addEdge(5, 2);
+		testDAG.addEdge(5, 0);
+		testDAG.addEdge(4, 0);
+		testDAG.addEdge(4, 1);
+		testDAG.addEdge(2, 3);
+		testDAG.addEdge(3, 1);
+
+		//saving again replaces the old snapshot, while the graph mapped from the old one keeps working
+		MappedDirectedAcyclicGraph.save(testDAG, file);
+		MappedDirectedAcyclicGraph mapped = MappedDirectedAcyclicGraph.open(file);
+		assertEquals(0, empty.N());
+		assertNull(empty.LCA(1, 0));
+		assertEquals(6, mapped.N());
+		assertEquals(6, mapped.E());
+		assertEquals(testDAG.topologicalSort(), mapped.topologicalSort());
+		assertEquals(Arrays.asList(5, 4, 2, 3, 1, 0), mapped.topologicalOrder());
+		assertTrue(mapped.isValidNode(3));
+		assertFalse(mapped.isValidNode(9));
+		assertEquals(2, mapped.indegree(1));
+		assertEquals(2, mapped.outdegree(5));
+		assertEquals(-1, mapped.outdegree(9));
+		assertEquals(3, mapped.depth(1));
+		assertEquals((Integer) 4, mapped.LCA(1, 0));
+		assertEquals((Integer) 3, mapped.LCA(3, 1));
+		assertEquals((Integer) 5, mapped.LCA(5, 3));
+		assertNull(mapped.LCA(1, 9));
+
+		//test that later changes do not show up in the file
+		testDAG.deleteNode(3);
+		assertEquals(6, mapped.N());
+		assertEquals(6, MappedDirectedAcyclicGraph.open(file).N());
+	}
+
+	@Test
+	public void testMatchesFrozen() throws IOException
+	{
+		//random DAG with scattered and negative keys, edges only go from lower to higher ids so none is rejected
+		DirectedAcyclicGraph<Integer, Integer> testDAG = new DirectedAcyclicGraph<>();
+		final int count = 500;
+		final Random random = new Random(11);
+		final int[] keys = new int[count];
+		for(int i = 0; i < count; i++)
+		{
+			keys[i] = random.nextInt();
+			testDAG.addNode(keys[i], i);
+		}
+		for(int i = 0; i < 3 * count; i++)
+		{
+			int v = random.nextInt(count);
+			int w = random.nextInt(count);
+			if(v != w)
+				testDAG.addEdge(keys[Math.min(v, w)], keys[Math.max(v, w)]);
+		}
+
+		final Path file = tempFile();
+		MappedDirectedAcyclicGraph.save(testDAG, file);
+		MappedDirectedAcyclicGraph mapped = MappedDirectedAcyclicGraph.open(file);
+		FrozenDirectedAcyclicGraph<Integer, Integer> frozen = testDAG.freeze();
+		assertEquals(frozen.N(), mapped.N());
+		assertEquals(frozen.E(), mapped.E());
+		assertEquals(frozen.topologicalOrder(), mapped.topologicalOrder());
+		for(int i = 0; i < count; i++)
+		{
+			assertTrue(mapped.isValidNode(keys[i]));
+			assertEquals(frozen.depth(keys[i]), mapped.depth(keys[i]));
+			assertEquals(frozen.indegree(keys[i]), mapped.indegree(keys[i]));
+			assertEquals(frozen.outdegree(keys[i]), mapped.outdegree(keys[i]));
+		}
+		for(int i = 0; i < 2000; i++)
+		{
+			int v = keys[random.nextInt(count)];
+			int w = keys[random.nextInt(count)];
+			assertEquals(frozen.LCA(v, w), mapped.LCA(v, w));
+		}
+	}
+
+	@Test
+	public void testBadFiles() throws IOException
+	{
+		DirectedAcyclicGraph<Integer, Character> testDAG = new DirectedAcyclicGraph<>();
+		testDAG.addNode(0, 'a');
+		testDAG.addNode(1, 'b');
+		testDAG.addEdge(0, 1);
+		final Path file = tempFile();
+		MappedDirectedAcyclicGraph.save(testDAG, file);
+		final byte[] bytes = Files.readAllBytes(file);
+
+		final byte[] notSnapshot = bytes.clone();
+		notSnapshot[0] ^= 1;
+		final byte[] unfinished = bytes.clone();
+		Arrays.fill(unfinished, 0, 4, (byte) 0);
+		final byte[] corrupt = bytes.clone();
+		corrupt[bytes.length - 1] ^= 1;
+		final byte[][] bad = {
+			Arrays.copyOf(bytes, bytes.length - 4),		// truncated
+			Arrays.copyOf(bytes, 6),					// too short for a header
+			notSnapshot,								// wrong magic number
+			unfinished,									// the magic number is written last, so a save that stopped early has none
+			corrupt										// checksum does not match
+		};
+		for(final byte[] contents : bad)
+		{
+			Files.write(file, contents);
+			try {
+				MappedDirectedAcyclicGraph.open(file, true);
+				fail("Testing a bad file of " + contents.length + " bytes");
+			} catch (IOException e) {
+				//expected
+			}
+		}
+
+		//only a verified open reads the whole file, so a plain one does not notice the corrupt body
+		Files.write(file, corrupt);
+		assertEquals(2, MappedDirectedAcyclicGraph.open(file).N());
+
+		//the intact file still opens, and saving leaves no temporary file behind
+		Files.write(file, bytes);
+		assertEquals((Integer) 0, MappedDirectedAcyclicGraph.open(file, true).LCA(0, 1));
+		try(DirectoryStream<Path> files = Files.newDirectoryStream(file.getParent(), file.getFileName() + "*.tmp"))
+		{
+			assertFalse(files.iterator().hasNext());
+		}
+	}
+}